@@ -43,6 +43,9 @@ public class Activator implements BundleActivator {
                 System.err.println("Database connection test failed: " + dbError.getMessage());
             }
 
+            // Create the chat history table and start its write-behind queue
+            ChatHistoryWriter.start();
+
             // Success logging
             System.out.println("==========================================");
             System.out.println("=== Gemini Plugin Bundle Started ===");
@@ -147,6 +150,18 @@ public class Activator implements BundleActivator {
         }
     }
 
+    /**
+     * Stop one component, logging the outcome under its name
+     */
+    private static void shutdown(String component, Runnable shutdown) {
+        try {
+            shutdown.run();
+            System.out.println("✅ " + component + " stopped");
+        } catch (Exception e) {
+            System.err.println("❌ Error stopping " + component + ": " + e.getMessage());
+        }
+    }
+
     public void stop(BundleContext context) {
         System.out.println("==========================================");
         System.out.println("=== Stopping Gemini Plugin Bundle ===");
@@ -160,6 +175,21 @@ public class Activator implements BundleActivator {
             System.err.println("❌ Error stopping embedded server: " + e.getMessage());
         }
 
+        // Stop background jobs and batch grading workers, then release pooled Gemini HTTP connections.
+        // Each component is stopped on its own so one failure does not skip the rest.
+        shutdown("Background job registry", JobRegistry::shutdown);
+        shutdown("Batch grading workers", AutoGradingService::shutdown);
+        shutdown("Gemini HTTP client pool", GeminiService::shutdown);
+        shutdown("Gemini rate limiter", GeminiRateLimiter::shutdown);
+        shutdown("Material content index", MaterialContentIndex::shutdown);
+        shutdown("Table search indexes", TableSearchIndex::shutdown);
+        shutdown("Extracted text cache", ExtractedTextCache::shutdown);
+        shutdown("Document extraction pools", DocumentExtractor::shutdown);
+
+        // Write queued chat history, then close the fallback database pool, if one was created
+        shutdown("Chat history writer", ChatHistoryWriter::shutdown);
+        shutdown("Database connection pool", DatabaseService::shutdown);
+
         // Unregister services
         if (registrationList != null) {
             int unregistered = 0;
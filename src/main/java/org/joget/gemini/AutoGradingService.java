@@ -5,11 +5,12 @@ import java.nio.file.*;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.text.SimpleDateFormat;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.joget.commons.util.LogUtil;
 import com.google.gson.Gson;
 
@@ -21,7 +22,20 @@ import com.google.gson.Gson;
  */
 public class AutoGradingService {
 
-    private static final String UPLOAD_PATH = "wflow/app_formuploads/"; // Default Joget upload path
+    // Batch grading limits (override with -Dgemini.grading.* system properties)
+    private static final int BATCH_PARALLELISM = Integer.getInteger("gemini.grading.parallelism", 5);
+    // Time budget per assignment, covering file extraction, Gemini calls and retries
+    private static final long GRADING_DEADLINE_MS = Long.getLong("gemini.grading.deadlineMs", 180000L);
+    // Assignment IDs per WHERE id IN (...) query when loading submissions
+    private static final int SUBMISSION_FETCH_CHUNK = 500;
+    // Joget system columns, which never hold uploaded file names
+    private static final Set<String> SYSTEM_COLUMNS = new HashSet<>(Arrays.asList(
+            "id", "dateCreated", "dateModified", "createdBy", "createdByName", "modifiedBy", "modifiedByName"));
+
+    // Shared across all batches so concurrent batch requests respect the same cap;
+    // request rate is enforced by GeminiRateLimiter inside GeminiService
+    private static ExecutorService batchExecutor;
+
     private final GeminiService geminiService;
     private final Gson gson;
 
@@ -34,10 +48,18 @@ public class AutoGradingService {
      * Grade an assignment automatically using AI with enhanced dual file support
      */
     public GradingResult gradeAssignment(String assignmentId) throws Exception {
+        // 1. Get assignment details from database
+        return gradeSubmission(assignmentId,
+                loadSubmissions(Collections.singletonList(assignmentId)).get(assignmentId));
+    }
+
+    /**
+     * Grade an assignment whose submission has already been loaded (null if it was not found)
+     */
+    private GradingResult gradeSubmission(String assignmentId, AssignmentSubmission submission) throws Exception {
         LogUtil.info("AutoGradingService", "Starting enhanced auto-grading for assignment: " + assignmentId);
+        GeminiService.Deadline deadline = GeminiService.Deadline.after(GRADING_DEADLINE_MS);
 
-        // 1. Get assignment details from database
-        AssignmentSubmission submission = getAssignmentSubmission(assignmentId);
         if (submission == null) {
             throw new IllegalArgumentException("Assignment not found: " + assignmentId);
         }
@@ -70,7 +92,8 @@ public class AutoGradingService {
         params.put("temperature", 0.3); // Lower temperature for consistent grading
         params.put("maxOutputTokens", 1500); // Increased for detailed feedback
 
-        String aiResponse = geminiService.generateContent("gemini-1.5-flash", gradingPrompt, params);
+        String aiResponse = geminiService.generateContentWithRetry("gemini-1.5-flash", gradingPrompt, params,
+                deadline);
 
         // 5. Parse AI response to extract grade and remarks
         GradingResult result = parseGradingResponse(aiResponse, submission);
@@ -83,49 +106,159 @@ public class AutoGradingService {
     }
 
     /**
-     * Get assignment submission details from database with enhanced file detection
+     * Grade several assignments concurrently. At most BATCH_PARALLELISM gradings
+     * are in flight; Gemini calls are paced by the shared rate limiter. Results are
+     * returned in the same order as the given IDs; failures are captured per item.
      */
-    private AssignmentSubmission getAssignmentSubmission(String assignmentId) throws SQLException {
-        // ✅ ENHANCED: Start with known working columns, then try to get additional file
-        // fields
-        String sql = "SELECT id, c_assignment_title, c_course, c_due_date, c_student_name, " +
-                "c_field3, c_answer, c_field2 as uploaded_file, c_assignment_completion, " +
-                "c_assignment_grade, c_assignment_remarks_teacher " +
-                "FROM app_fd_assignments WHERE id = ?";
+    public List<BatchItemResult> gradeAssignments(List<String> assignmentIds) {
+        return gradeAssignments(assignmentIds, null);
+    }
 
-        LogUtil.info("AutoGradingService", "Executing SQL: " + sql);
-        List<Map<String, Object>> results = DatabaseService.executeQuery(sql, assignmentId);
+    /**
+     * Grade several assignments concurrently, notifying the listener as each
+     * item finishes (in completion order, on a worker thread)
+     */
+    public List<BatchItemResult> gradeAssignments(List<String> assignmentIds, BatchListener listener) {
+        LogUtil.info("AutoGradingService", "Starting concurrent batch grading for " + assignmentIds.size()
+                + " assignments (parallelism=" + BATCH_PARALLELISM + ")");
+        long startTime = System.currentTimeMillis();
 
-        if (results.isEmpty()) {
-            LogUtil.warn("AutoGradingService", "No assignment found with ID: " + assignmentId);
-            return null;
+        // Load every submission up front in one query instead of two per item
+        Map<String, AssignmentSubmission> submissions;
+        try {
+            submissions = loadSubmissions(assignmentIds);
+        } catch (SQLException e) {
+            LogUtil.warn("AutoGradingService", "Batch submission load failed, loading per item: " + e.getMessage());
+            submissions = null;
+        }
+        Map<String, AssignmentSubmission> preloaded = submissions;
+
+        ExecutorService executor = getBatchExecutor();
+        List<Future<BatchItemResult>> futures = new ArrayList<>();
+        for (int i = 0; i < assignmentIds.size(); i++) {
+            int index = i;
+            String assignmentId = assignmentIds.get(i);
+            futures.add(executor.submit(() -> {
+                BatchItemResult item;
+                try {
+                    GradingResult result = preloaded != null
+                            ? gradeSubmission(assignmentId, preloaded.get(assignmentId))
+                            : gradeAssignment(assignmentId);
+                    item = new BatchItemResult(assignmentId, result, null);
+                } catch (Exception e) {
+                    LogUtil.error("AutoGradingService", e,
+                            "Error grading assignment " + assignmentId + ": " + e.getMessage());
+                    item = new BatchItemResult(assignmentId, null, e.getMessage());
+                }
+                if (listener != null) {
+                    listener.onItemComplete(index, item);
+                }
+                return item;
+            }));
+        }
+
+        List<BatchItemResult> results = new ArrayList<>();
+        for (int i = 0; i < assignmentIds.size(); i++) {
+            String assignmentId = assignmentIds.get(i);
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                results.add(new BatchItemResult(assignmentId, null, cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.get(i).cancel(true);
+                results.add(new BatchItemResult(assignmentId, null, "Batch grading interrupted"));
+            }
         }
 
-        Map<String, Object> row = results.get(0);
-        AssignmentSubmission submission = new AssignmentSubmission();
+        LogUtil.info("AutoGradingService", "Batch grading finished in "
+                + (System.currentTimeMillis() - startTime) + "ms");
+        return results;
+    }
 
-        submission.setId(row.get("id").toString());
-        submission.setTitle((String) row.get("c_assignment_title"));
-        submission.setCourse((String) row.get("c_course"));
-        submission.setStudentName((String) row.get("c_student_name"));
+    /**
+     * Get the shared batch grading pool, creating it on first use
+     */
+    private static synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            batchExecutor = Executors.newFixedThreadPool(BATCH_PARALLELISM, runnable -> {
+                Thread thread = new Thread(runnable, "gemini-grading-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchExecutor;
+    }
 
-        // ✅ ENHANCED: Handle both answer fields - use c_field3 as primary, c_answer as
-        // secondary
-        String primaryAnswer = (String) row.get("c_field3");
-        String secondaryAnswer = (String) row.get("c_answer");
-        String combinedAnswer = "";
+    /**
+     * Stop the batch grading pool
+     */
+    public static synchronized void shutdown() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
+    }
 
-        if (primaryAnswer != null && !primaryAnswer.trim().isEmpty()) {
-            combinedAnswer = primaryAnswer;
+    /**
+     * Load assignment submissions by ID with one WHERE id IN (...) query per chunk.
+     * All form columns are fetched (resolved from the cached table schema) so file
+     * fields can be discovered without a second SELECT * per assignment.
+     */
+    private Map<String, AssignmentSubmission> loadSubmissions(Collection<String> assignmentIds) throws SQLException {
+        Map<String, AssignmentSubmission> submissions = new HashMap<>();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(assignmentIds));
+        if (ids.isEmpty()) {
+            return submissions;
         }
-        if (secondaryAnswer != null && !secondaryAnswer.trim().isEmpty()) {
-            if (!combinedAnswer.isEmpty()) {
-                combinedAnswer += "\n\nAdditional Answer: " + secondaryAnswer;
-            } else {
-                combinedAnswer = secondaryAnswer;
+
+        List<String> columns = new ArrayList<>();
+        for (String column : DatabaseService.getTableColumns("app_fd_assignments")) {
+            if (!SYSTEM_COLUMNS.contains(column)) {
+                columns.add(column);
+            }
+        }
+        // Column positions in the SELECT below, so rows are read without building a map each
+        Map<String, Integer> positions = new HashMap<>();
+        positions.put("id", 1);
+        for (int i = 0; i < columns.size(); i++) {
+            positions.put(columns.get(i), i + 2);
+        }
+
+        for (int from = 0; from < ids.size(); from += SUBMISSION_FETCH_CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + SUBMISSION_FETCH_CHUNK));
+            String sql = "SELECT id, " + String.join(", ", columns) + " FROM app_fd_assignments WHERE id IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            for (AssignmentSubmission submission : DatabaseService.query(sql,
+                    (rs, rowNum) -> toSubmission(rs, columns, positions), chunk.toArray())) {
+                submissions.put(submission.getId(), submission);
             }
         }
-        submission.setAnswer(combinedAnswer);
+
+        LogUtil.info("AutoGradingService", "Loaded " + submissions.size() + " of " + ids.size()
+                + " assignment submissions");
+        for (String id : ids) {
+            if (!submissions.containsKey(id)) {
+                LogUtil.warn("AutoGradingService", "No assignment found with ID: " + id);
+            }
+        }
+        return submissions;
+    }
+
+    /**
+     * Build a submission from an assignment row with enhanced file detection
+     */
+    private AssignmentSubmission toSubmission(ResultSet row, List<String> columns, Map<String, Integer> positions)
+            throws SQLException {
+        AssignmentSubmission submission = new AssignmentSubmission();
+        submission.setId(columnValue(row, positions, "id"));
+        submission.setTitle(columnValue(row, positions, "c_assignment_title"));
+        submission.setCourse(columnValue(row, positions, "c_course"));
+        submission.setStudentName(columnValue(row, positions, "c_student_name"));
+        submission.setAnswer(combineAnswers(columnValue(row, positions, "c_field3"), columnValue(row, positions, "c_answer")));
+        String uploadedFile = columnValue(row, positions, "c_field2");
 
         // ✅ ENHANCED: Try to get both question file and answer file with smart
         // detection
@@ -133,8 +266,8 @@ public class AutoGradingService {
         String answersFile = null;
 
         // First, get the file from c_field2 (we know this field exists)
-        if (row.get("uploaded_file") != null && !row.get("uploaded_file").toString().trim().isEmpty()) {
-            String filename = row.get("uploaded_file").toString();
+        if (uploadedFile != null && !uploadedFile.trim().isEmpty()) {
+            String filename = uploadedFile;
             LogUtil.info("AutoGradingService", "Found file in c_field2: " + filename);
 
             // ✅ NEW: Smart file type detection based on filename
@@ -154,62 +287,46 @@ public class AutoGradingService {
             }
         }
 
-        // ✅ ENHANCED: Try additional query to discover more file fields
-        try {
-            String additionalSql = "SELECT * FROM app_fd_assignments WHERE id = ? LIMIT 1";
-            List<Map<String, Object>> fullResults = DatabaseService.executeQuery(additionalSql, assignmentId);
-
-            if (!fullResults.isEmpty()) {
-                Map<String, Object> fullRow = fullResults.get(0);
-                LogUtil.info("AutoGradingService", "Available columns: " + fullRow.keySet().toString());
-
-                // Look for additional file fields in the full result
-                for (String key : fullRow.keySet()) {
-                    Object value = fullRow.get(key);
-                    if (value != null && !value.toString().trim().isEmpty()) {
-                        String valueStr = value.toString();
-
-                        // Check if this looks like a filename
-                        if (valueStr.endsWith(".docx") || valueStr.endsWith(".pdf") || valueStr.endsWith(".txt") ||
-                                valueStr.endsWith(".doc") || valueStr.endsWith(".xlsx")) {
-                            LogUtil.info("AutoGradingService", "Found file in column " + key + ": " + valueStr);
-
-                            String valueStrLower = valueStr.toLowerCase();
-
-                            // Use naming conventions to determine file type
-                            if (valueStrLower.contains("question") || valueStrLower.contains("assignment") ||
-                                    valueStrLower.contains("problem") || valueStrLower.contains("task")) {
-                                if (questionsFile == null) {
-                                    questionsFile = valueStr;
-                                    LogUtil.info("AutoGradingService",
-                                            "Identified as questions file: " + questionsFile);
-                                }
-                            } else if (valueStrLower.contains("answer") || valueStrLower.contains("solution") ||
-                                    valueStrLower.contains("response") || valueStrLower.contains("submission")) {
-                                if (answersFile == null) {
-                                    answersFile = valueStr;
-                                    LogUtil.info("AutoGradingService", "Identified as answers file: " + answersFile);
-                                }
-                            } else if (!key.equals("uploaded_file") && questionsFile == null
-                                    && !valueStr.equals(answersFile)) {
-                                // If we haven't identified this file yet and it's in a different field, it
-                                // might be the questions
-                                questionsFile = valueStr;
-                                LogUtil.info("AutoGradingService",
-                                        "Tentatively identified as questions file from field " + key + ": "
-                                                + questionsFile);
-                            }
-                        }
+        // ✅ ENHANCED: Look for additional file fields among the other form columns
+        for (String key : columns) {
+            String valueStr = columnValue(row, positions, key);
+            if (valueStr == null || valueStr.trim().isEmpty()) {
+                continue;
+            }
+
+            // Check if this looks like a filename
+            if (valueStr.endsWith(".docx") || valueStr.endsWith(".pdf") || valueStr.endsWith(".txt") ||
+                    valueStr.endsWith(".doc") || valueStr.endsWith(".xlsx")) {
+                LogUtil.info("AutoGradingService", "Found file in column " + key + ": " + valueStr);
+
+                String valueStrLower = valueStr.toLowerCase();
+
+                // Use naming conventions to determine file type
+                if (valueStrLower.contains("question") || valueStrLower.contains("assignment") ||
+                        valueStrLower.contains("problem") || valueStrLower.contains("task")) {
+                    if (questionsFile == null) {
+                        questionsFile = valueStr;
+                        LogUtil.info("AutoGradingService", "Identified as questions file: " + questionsFile);
+                    }
+                } else if (valueStrLower.contains("answer") || valueStrLower.contains("solution") ||
+                        valueStrLower.contains("response") || valueStrLower.contains("submission")) {
+                    if (answersFile == null) {
+                        answersFile = valueStr;
+                        LogUtil.info("AutoGradingService", "Identified as answers file: " + answersFile);
                     }
+                } else if (!key.equals("c_field2") && questionsFile == null && !valueStr.equals(answersFile)) {
+                    // If we haven't identified this file yet and it's in a different field, it
+                    // might be the questions
+                    questionsFile = valueStr;
+                    LogUtil.info("AutoGradingService",
+                            "Tentatively identified as questions file from field " + key + ": " + questionsFile);
                 }
             }
-        } catch (Exception e) {
-            LogUtil.warn("AutoGradingService", "Could not query additional fields: " + e.getMessage());
         }
 
         submission.setUploadedFile(answersFile);
         submission.setQuestionsFile(questionsFile);
-        submission.setQuestions("Assignment: " + row.get("c_assignment_title")); // Use title as context
+        submission.setQuestions("Assignment: " + submission.getTitle()); // Use title as context
 
         LogUtil.info("AutoGradingService", "Retrieved assignment: " + submission.getTitle() +
                 " for student: " + (submission.getStudentName() != null ? submission.getStudentName() : "Unknown") +
@@ -226,6 +343,35 @@ public class AutoGradingService {
         return submission;
     }
 
+    private static String columnValue(ResultSet row, Map<String, Integer> positions, String column)
+            throws SQLException {
+        Integer position = positions.get(column);
+        if (position == null) {
+            return null; // not a column of this form
+        }
+        Object value = row.getObject(position);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * ✅ ENHANCED: Handle both answer fields - use c_field3 as primary, c_answer as secondary
+     */
+    private static String combineAnswers(String primaryAnswer, String secondaryAnswer) {
+        String combinedAnswer = "";
+
+        if (primaryAnswer != null && !primaryAnswer.trim().isEmpty()) {
+            combinedAnswer = primaryAnswer;
+        }
+        if (secondaryAnswer != null && !secondaryAnswer.trim().isEmpty()) {
+            if (!combinedAnswer.isEmpty()) {
+                combinedAnswer += "\n\nAdditional Answer: " + secondaryAnswer;
+            } else {
+                combinedAnswer = secondaryAnswer;
+            }
+        }
+        return combinedAnswer;
+    }
+
     /**
      * Extract content from uploaded files (PDF, DOCX, TXT) with enhanced path
      * detection
@@ -233,43 +379,10 @@ public class AutoGradingService {
     private String extractFileContent(String filename, String assignmentId) {
         try {
             // ✅ ENHANCED: Joget file path structure with assignment ID subdirectories
-            String[] possiblePaths = {
-                    // Primary paths with assignment ID subdirectory (Joget's actual structure)
-                    UPLOAD_PATH + "assignments/" + assignmentId + "/" + filename,
-                    "./wflow/app_formuploads/assignments/" + assignmentId + "/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/assignments/" + assignmentId + "/"
-                            + filename,
-
-                    // Alternative paths if assignments subfolder doesn't exist
-                    UPLOAD_PATH + assignmentId + "/" + filename,
-                    "./wflow/app_formuploads/" + assignmentId + "/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/" + assignmentId + "/" + filename,
-
-                    // Fallback to old paths (for backward compatibility)
-                    UPLOAD_PATH + filename,
-                    "uploads/" + filename,
-                    "../uploads/" + filename,
-                    "./wflow/app_formuploads/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/" + filename
-            };
-
-            Path filePath = null;
-            for (String pathStr : possiblePaths) {
-                Path testPath = Paths.get(pathStr);
-                LogUtil.info("AutoGradingService", "Checking path: " + testPath.toString());
-                if (Files.exists(testPath)) {
-                    filePath = testPath;
-                    LogUtil.info("AutoGradingService", "✅ Found file at: " + testPath.toString());
-                    break;
-                }
-            }
+            Path filePath = DocumentExtractor.findUpload(filename, assignmentId, "assignments");
 
             if (filePath == null) {
                 LogUtil.warn("AutoGradingService", "File not found: " + filename + " for assignment: " + assignmentId);
-                LogUtil.info("AutoGradingService", "Searched in paths:");
-                for (String path : possiblePaths) {
-                    LogUtil.info("AutoGradingService", "  - " + path);
-                }
 
                 // Additional diagnostic information
                 LogUtil.info("AutoGradingService", "Working directory: " + System.getProperty("user.dir"));
@@ -281,65 +394,17 @@ public class AutoGradingService {
             }
 
             LogUtil.info("AutoGradingService", "Extracting content from: " + filePath.toString());
+            return DocumentExtractor.extract(filePath, filename);
 
-            String extension = getFileExtension(filename).toLowerCase();
-
-            switch (extension) {
-                case "pdf":
-                    return extractPDFContent(filePath);
-                case "docx":
-                    return extractDOCXContent(filePath);
-                case "txt":
-                    return extractTXTContent(filePath);
-                default:
-                    LogUtil.warn("AutoGradingService", "Unsupported file type: " + extension);
-                    return "Unsupported file type: " + extension + ". Please use PDF, DOCX, or TXT files.";
-            }
-
+        } catch (DocumentExtractor.UnsupportedFormatException e) {
+            LogUtil.warn("AutoGradingService", "Unsupported file type: " + e.getExtension());
+            return e.getMessage();
         } catch (Exception e) {
             LogUtil.error("AutoGradingService", e, "Error extracting file content: " + e.getMessage());
             return "Error reading file: " + e.getMessage();
         }
     }
 
-    /**
-     * Extract content from PDF files
-     */
-    private String extractPDFContent(Path filePath) throws IOException {
-        try (PDDocument document = PDDocument.load(filePath.toFile())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String content = stripper.getText(document);
-            LogUtil.info("AutoGradingService", "Extracted PDF content: " + content.length() + " characters");
-            return content;
-        }
-    }
-
-    /**
-     * Extract content from DOCX files
-     */
-    private String extractDOCXContent(Path filePath) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(Files.newInputStream(filePath))) {
-            StringBuilder content = new StringBuilder();
-
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                content.append(paragraph.getText()).append("\n");
-            }
-
-            String result = content.toString();
-            LogUtil.info("AutoGradingService", "Extracted DOCX content: " + result.length() + " characters");
-            return result;
-        }
-    }
-
-    /**
-     * Extract content from TXT files
-     */
-    private String extractTXTContent(Path filePath) throws IOException {
-        String content = new String(Files.readAllBytes(filePath), "UTF-8");
-        LogUtil.info("AutoGradingService", "Extracted TXT content: " + content.length() + " characters");
-        return content;
-    }
-
     /**
      * Build comprehensive grading prompt for AI with separate question and answer
      * files
@@ -513,20 +578,10 @@ public class AutoGradingService {
         remarks += "\n\n[AI Auto-Graded on " + sdf.format(new java.util.Date()) + "]";
 
         DatabaseService.executeUpdate(updateSql, result.getGrade(), remarks, assignmentId);
+        DatabaseService.invalidateSummaries("assignments");
         LogUtil.info("AutoGradingService", "Grading result saved to database for assignment: " + assignmentId);
     }
 
-    /**
-     * Get file extension
-     */
-    private String getFileExtension(String filename) {
-        int lastDotIndex = filename.lastIndexOf('.');
-        if (lastDotIndex > 0 && lastDotIndex < filename.length() - 1) {
-            return filename.substring(lastDotIndex + 1);
-        }
-        return "";
-    }
-
     /**
      * Get current timestamp as formatted string
      */
@@ -618,6 +673,44 @@ public class AutoGradingService {
         }
     }
 
+    /**
+     * Notified as each batch item finishes
+     */
+    public interface BatchListener {
+        void onItemComplete(int index, BatchItemResult item);
+    }
+
+    /**
+     * Outcome of one assignment in a batch: either a result or an error message
+     */
+    public static class BatchItemResult {
+        private final String assignmentId;
+        private final GradingResult result;
+        private final String error;
+
+        public BatchItemResult(String assignmentId, GradingResult result, String error) {
+            this.assignmentId = assignmentId;
+            this.result = result;
+            this.error = error;
+        }
+
+        public String getAssignmentId() {
+            return assignmentId;
+        }
+
+        public GradingResult getResult() {
+            return result;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return result != null;
+        }
+    }
+
     /**
      * GradingResult class (unchanged)
      */
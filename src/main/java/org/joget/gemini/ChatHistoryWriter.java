@@ -0,0 +1,224 @@
+package org.joget.gemini;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Write-behind queue for chat history so the /chat request never waits on an INSERT
+ * ✅ BATCH: Queued conversations are written with one JDBC batch per flush
+ * ✅ FLUSH: A background thread writes every flush interval, or sooner once a batch is full
+ * ✅ BACKPRESSURE: When the queue is full the caller waits briefly, then writes its row itself
+ * ✅ DRAIN: Pending rows are written when the bundle stops
+ * ✅ READ-YOUR-WRITES: History reads merge a session's pending rows without waiting for the writer
+ */
+public class ChatHistoryWriter {
+
+    // Queue settings (override with -Dgemini.chatHistory.* system properties)
+    private static final int QUEUE_CAPACITY = Integer.getInteger("gemini.chatHistory.queueSize", 1000);
+    private static final int BATCH_SIZE = Integer.getInteger("gemini.chatHistory.batchSize", 50);
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("gemini.chatHistory.flushIntervalMs", 1000L);
+    private static final long ENQUEUE_WAIT_MS = Long.getLong("gemini.chatHistory.enqueueWaitMs", 200L);
+    private static final long DRAIN_TIMEOUT_MS = Long.getLong("gemini.chatHistory.drainTimeoutMs", 10000L);
+
+    // Rows are {sessionId, userPrompt, aiResponse, model, timestamp}
+    private static final BlockingQueue<Object[]> queue = new LinkedBlockingQueue<>(Math.max(1, QUEUE_CAPACITY));
+    // Held while rows are taken off the queue and written, so flush() also waits for an in-flight batch
+    private static final Object writeLock = new Object();
+    // Guards the hand-off from queue to writing (no I/O), so pendingRows() never misses a row in between
+    private static final Object pendingLock = new Object();
+    // Batch being inserted right now; rows stay visible to pendingRows() until committed
+    private static List<Object[]> writing = Collections.emptyList();
+
+    private static Thread worker;
+    private static volatile boolean running;
+
+    private static final AtomicLong enqueued = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong directWrites = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Ensure the chat history table exists and start the background writer
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            DatabaseService.ensureChatHistoryTable();
+        } catch (SQLException e) {
+            LogUtil.warn("ChatHistoryWriter", "Could not create chat history table yet, will retry on first write: "
+                    + e.getMessage());
+        }
+
+        running = true;
+        worker = new Thread(ChatHistoryWriter::runWorker, "gemini-chat-history");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queue a conversation for writing. Blocks for at most ENQUEUE_WAIT_MS when the
+     * queue is full, then writes the row directly on the caller's thread.
+     * Returns true when the row was only queued, false when it has been written.
+     */
+    public static boolean enqueue(String sessionId, String userPrompt, String aiResponse, String model)
+            throws SQLException {
+        Object[] row = { sessionId, userPrompt, aiResponse, model, new Timestamp(System.currentTimeMillis()) };
+
+        if (running) {
+            try {
+                if (queue.offer(row, ENQUEUE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    // shutdown() may have drained the queue between the check and the offer;
+                    // if the row is still there nobody will write it, so take it back
+                    if (running || !queue.remove(row)) {
+                        enqueued.incrementAndGet();
+                        if (queue.size() >= BATCH_SIZE) {
+                            LockSupport.unpark(worker);
+                        }
+                        return true;
+                    }
+                } else {
+                    LogUtil.warn("ChatHistoryWriter", "Chat history queue full (" + queue.size()
+                            + "), writing directly");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Queue full or writer not running: write now, which slows producers to the database's pace
+        directWrites.incrementAndGet();
+        DatabaseService.insertChatConversations(Collections.singletonList(row));
+        written.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Write everything queued so far before returning
+     */
+    public static void flush() {
+        synchronized (writeLock) {
+            while (true) {
+                List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                synchronized (pendingLock) {
+                    if (queue.drainTo(batch, BATCH_SIZE) == 0) {
+                        return;
+                    }
+                    writing = batch;
+                }
+                try {
+                    writeBatch(batch);
+                } finally {
+                    synchronized (pendingLock) {
+                        writing = Collections.emptyList();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rows of a session that are queued or being written but not yet committed, oldest
+     * first, as {sessionId, userPrompt, aiResponse, model, timestamp}. Does not wait for the writer.
+     */
+    static List<Object[]> pendingRows(String sessionId) {
+        List<Object[]> rows = new ArrayList<>();
+        synchronized (pendingLock) {
+            for (Object[] row : writing) {
+                if (Objects.equals(sessionId, row[0])) {
+                    rows.add(row);
+                }
+            }
+            for (Object[] row : queue) {
+                if (Objects.equals(sessionId, row[0])) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void runWorker() {
+        while (running) {
+            // Woken early by enqueue() once a full batch is waiting
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+            flush();
+        }
+        flush();
+    }
+
+    private static void writeBatch(List<Object[]> batch) {
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                DatabaseService.insertChatConversations(batch);
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return;
+            } catch (SQLException e) {
+                if (attempt == 2) {
+                    failed.addAndGet(batch.size());
+                    Set<Object> sessions = new LinkedHashSet<>();
+                    for (Object[] row : batch) {
+                        sessions.add(row[0]);
+                    }
+                    LogUtil.error("ChatHistoryWriter", e, "Dropped " + batch.size()
+                            + " chat history rows after failed write (sessions " + sessions + "): " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Rows dropped after failed writes since the bundle started (reported by /health)
+     */
+    public static long getDroppedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Queue counters for monitoring
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running);
+        stats.put("queued", queue.size());
+        stats.put("capacity", QUEUE_CAPACITY);
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("directWrites", directWrites.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    /**
+     * Stop the writer, draining the queue first (waits up to DRAIN_TIMEOUT_MS)
+     */
+    public static synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(DRAIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            LogUtil.warn("ChatHistoryWriter", "Chat history writer did not finish within " + DRAIN_TIMEOUT_MS
+                    + "ms, " + queue.size() + " rows not written");
+            worker.interrupt();
+        }
+        worker = null;
+    }
+}
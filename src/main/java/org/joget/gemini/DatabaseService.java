@@ -4,6 +4,14 @@ import java.sql.*;
 import java.util.*;
 import java.io.*;
 import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.joget.commons.util.LogUtil;
 
 public class DatabaseService {
@@ -18,48 +26,153 @@ public class DatabaseService {
     private static final String DB_URL = "jdbc:mysql://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME
             + "?characterEncoding=UTF-8&useSSL=false&allowPublicKeyRetrieval=true";
 
-    // ... (keeping existing connection methods)
+    // Fallback connection pool (override with -Dgemini.db.* system properties)
+    private static final int POOL_MIN_IDLE = Integer.getInteger("gemini.db.pool.minIdle", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("gemini.db.pool.maxSize", 10);
+    private static final long POOL_CONNECTION_TIMEOUT_MS = Long.getLong("gemini.db.pool.connectionTimeoutMs", 10000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("gemini.db.pool.idleTimeoutMs", 300000L);
+    private static final long POOL_MAX_LIFETIME_MS = Long.getLong("gemini.db.pool.maxLifetimeMs", 1500000L);
+    private static final long POOL_LEAK_DETECTION_MS = Long.getLong("gemini.db.pool.leakDetectionMs", 60000L);
+    // How long a retired fallback pool waits for borrowed connections before closing
+    private static final long POOL_DRAIN_MS = Long.getLong("gemini.db.pool.drainMs", 30000L);
+    // How long to wait before asking Joget for its DataSource again after a failed lookup
+    private static final long LOOKUP_RETRY_MS = Long.getLong("gemini.db.lookupRetryMs", 60000L);
+
+    // Statement caching: driver-side prepared statement cache on the fallback pool, plus
+    // column labels cached per SQL string so repeated queries skip ResultSetMetaData
+    private static final boolean STATEMENT_CACHE = !"false".equals(System.getProperty("gemini.db.statementCache"));
+    private static final int METADATA_CACHE_SIZE = Integer.getInteger("gemini.db.metadataCacheSize", 256);
+    private static final Map<String, String[]> columnLabelCache = new ConcurrentHashMap<>();
+    // Rows per round trip for streamQuery on drivers without row-by-row streaming
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("gemini.db.streamFetchSize", 500);
+    // Rows included in the AI context summaries
+    private static final int SUMMARY_ROWS = 10;
+    // Rows returned by keyword search
+    private static final int SEARCH_ROWS = 20;
+    // "index" ranks keyword searches with TableSearchIndex; "like" keeps the '%term%' table scans
+    private static final boolean USE_SEARCH_INDEX = !"like".equalsIgnoreCase(System.getProperty("gemini.search.mode"));
+
+    // Read-through cache for AI context summaries, keyed by "table|query type|normalized terms"
+    private static final TtlCache<String, String> summaryCache = new TtlCache<>(
+            Integer.getInteger("gemini.cache.summary.maxEntries", 500),
+            Long.getLong("gemini.cache.summary.ttlMs", 60000L));
+
+    // Course statistics snapshot, recomputed in the background once older than STATS_TTL_MS
+    private static final long STATS_TTL_MS = Long.getLong("gemini.stats.ttlMs", 30000L);
+    private static volatile Map<String, Object> courseStatistics;
+    private static volatile long courseStatisticsLoadedAt;
+    private static final AtomicBoolean courseStatisticsRefreshing = new AtomicBoolean();
+    private static ExecutorService statsExecutor;
+
+    // Column names per table; expire so columns Joget adds when a form changes are picked up
+    private static final TtlCache<String, List<String>> tableColumnsCache = new TtlCache<>(64,
+            Long.getLong("gemini.db.schemaCacheMs", 300000L));
+
+    // Keyset pagination page size limit
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("gemini.db.maxPageSize", 500);
+
+    // Set once gemini_chat_history is known to exist
+    private static volatile boolean chatTableReady;
+
+    // Resolved once and reused; Joget's DataSource is preferred over the fallback pool
+    private static volatile javax.sql.DataSource dataSource;
+    private static volatile String connectionMethod = "unresolved";
+    private static volatile HikariDataSource fallbackPool;
+    private static volatile long nextLookupAt;
+    private static java.lang.reflect.Method getApplicationContextMethod;
+    private static java.lang.reflect.Method getBeanMethod;
+    private static Properties jogetDatabaseProperties;
 
     /**
      * Get database connection using Joget's built-in database access
      */
     public static Connection getConnection() throws SQLException {
-        try {
-            LogUtil.info("DatabaseService", "Attempting to get database connection via Joget's infrastructure...");
+        javax.sql.DataSource ds = dataSource;
+        if (ds == null || (ds == fallbackPool && System.currentTimeMillis() >= nextLookupAt)) {
+            ds = resolveDataSource();
+        }
 
-            Class<?> appUtilClass = Class.forName("org.joget.apps.app.service.AppUtil");
-            Object appContext = appUtilClass.getMethod("getApplicationContext").invoke(null);
-            Object dataSource = appContext.getClass().getMethod("getBean", String.class, Class.class)
-                    .invoke(appContext, "setupDataSource", javax.sql.DataSource.class);
+        Connection conn;
+        try {
+            conn = ds.getConnection();
+        } catch (SQLException e) {
+            // The fallback pool was retired between reading it and checking out; use its replacement
+            javax.sql.DataSource current = dataSource;
+            if (ds instanceof HikariDataSource && ((HikariDataSource) ds).isClosed() && current != null
+                    && current != ds) {
+                conn = current.getConnection();
+            } else {
+                throw e;
+            }
+        }
+        if (conn == null || conn.isClosed()) {
+            throw new SQLException("Database connection is null or closed (" + connectionMethod + ")");
+        }
+        return conn;
+    }
 
-            Connection conn = ((javax.sql.DataSource) dataSource).getConnection();
+    /**
+     * Resolve the DataSource once: Joget's setupDataSource bean if available,
+     * otherwise a pooled direct connection
+     */
+    private static synchronized javax.sql.DataSource resolveDataSource() throws SQLException {
+        if (dataSource != null && dataSource != fallbackPool) {
+            return dataSource;
+        }
 
-            if (conn != null && !conn.isClosed()) {
-                LogUtil.info("DatabaseService", "✅ Successfully obtained database connection via Joget's DataSource");
-                return conn;
-            } else {
-                LogUtil.error("DatabaseService", null, "Joget DataSource connection is null or closed");
-                throw new SQLException("Joget database connection is null or closed");
+        // Retry the Joget lookup periodically; the fallback pool serves requests meanwhile
+        if (System.currentTimeMillis() >= nextLookupAt) {
+            try {
+                LogUtil.info("DatabaseService", "Attempting to get database connection via Joget's infrastructure...");
+                javax.sql.DataSource jogetDataSource = lookupJogetDataSource();
+                if (jogetDataSource != null) {
+                    LogUtil.info("DatabaseService", "✅ Using Joget's DataSource for database connections");
+                    connectionMethod = "joget_datasource";
+                    dataSource = jogetDataSource;
+                    retireFallbackPool(false);
+                    return jogetDataSource;
+                }
+                LogUtil.warn("DatabaseService", "Joget DataSource lookup returned null");
+            } catch (Exception e) {
+                LogUtil.warn("DatabaseService", "Failed to get connection via Joget infrastructure: " + e.getMessage());
             }
+            nextLookupAt = System.currentTimeMillis() + LOOKUP_RETRY_MS;
+        }
+
+        if (fallbackPool == null) {
+            LogUtil.info("DatabaseService", "Falling back to pooled direct connection...");
+        }
+        return getFallbackPool();
+    }
 
-        } catch (Exception e) {
-            LogUtil.warn("DatabaseService", "Failed to get connection via Joget infrastructure: " + e.getMessage());
-            LogUtil.info("DatabaseService", "Falling back to direct connection attempt...");
-            return getDirectConnection();
+    /**
+     * Look up Joget's DataSource bean, caching the reflective method handles
+     */
+    private static javax.sql.DataSource lookupJogetDataSource() throws Exception {
+        if (getApplicationContextMethod == null) {
+            Class<?> appUtilClass = Class.forName("org.joget.apps.app.service.AppUtil");
+            getApplicationContextMethod = appUtilClass.getMethod("getApplicationContext");
+        }
+        Object appContext = getApplicationContextMethod.invoke(null);
+        if (appContext == null) {
+            return null;
         }
+        if (getBeanMethod == null) {
+            getBeanMethod = appContext.getClass().getMethod("getBean", String.class, Class.class);
+        }
+        return (javax.sql.DataSource) getBeanMethod.invoke(appContext, "setupDataSource", javax.sql.DataSource.class);
     }
 
     /**
-     * Fallback method to try direct database connection
+     * Fallback connection pool using Joget's database properties, with connection
+     * validation on checkout and leak detection
      */
-    private static Connection getDirectConnection() throws SQLException {
-        LogUtil.info("DatabaseService", "Attempting direct database connection (fallback)...");
+    private static synchronized javax.sql.DataSource getFallbackPool() throws SQLException {
+        if (fallbackPool != null) {
+            return fallbackPool;
+        }
 
-        String[] drivers = {
-                "com.mysql.cj.jdbc.Driver",
-                "com.mysql.jdbc.Driver",
-                "org.mariadb.jdbc.Driver"
-        };
+        LogUtil.info("DatabaseService", "Creating fallback database connection pool...");
 
         Properties dbProps = loadJogetDatabaseProperties();
         String url = DB_URL;
@@ -72,32 +185,152 @@ public class DatabaseService {
             password = dbProps.getProperty("workflowPassword", DB_PASSWORD);
         }
 
-        SQLException lastException = null;
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("gemini-db");
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setDriverClassName(findJdbcDriver());
+        config.setMinimumIdle(POOL_MIN_IDLE);
+        config.setMaximumPoolSize(POOL_MAX_SIZE);
+        config.setConnectionTimeout(POOL_CONNECTION_TIMEOUT_MS);
+        config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+        config.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+        config.setLeakDetectionThreshold(POOL_LEAK_DETECTION_MS);
+        if (STATEMENT_CACHE) {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "250");
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        }
+
+        try {
+            fallbackPool = new HikariDataSource(config);
+        } catch (RuntimeException e) {
+            throw new SQLException("All database connection attempts failed. Last error: " + e.getMessage(), e);
+        }
+
+        LogUtil.info("DatabaseService", "✅ Fallback connection pool created (min=" + POOL_MIN_IDLE + ", max="
+                + POOL_MAX_SIZE + ")");
+        connectionMethod = "direct_connection_fallback";
+        dataSource = fallbackPool;
+        return fallbackPool;
+    }
+
+    /**
+     * Find the first available JDBC driver class
+     */
+    private static String findJdbcDriver() throws SQLException {
+        String[] drivers = {
+                "com.mysql.cj.jdbc.Driver",
+                "com.mysql.jdbc.Driver",
+                "org.mariadb.jdbc.Driver"
+        };
 
         for (String driver : drivers) {
             try {
-                LogUtil.info("DatabaseService", "Trying driver: " + driver);
                 Class.forName(driver);
-                Connection conn = DriverManager.getConnection(url, user, password);
-                LogUtil.info("DatabaseService", "✅ Direct connection successful with driver: " + driver);
-                return conn;
-
+                LogUtil.info("DatabaseService", "Using JDBC driver: " + driver);
+                return driver;
             } catch (ClassNotFoundException e) {
                 LogUtil.warn("DatabaseService", "Driver not found: " + driver);
-            } catch (SQLException e) {
-                LogUtil.warn("DatabaseService", "Connection failed with driver " + driver + ": " + e.getMessage());
-                lastException = e;
             }
         }
+        throw new SQLException("All database connection attempts failed. Last error: no JDBC driver found");
+    }
+
+    /**
+     * Stop handing out the fallback pool and close it once its borrowed connections are
+     * returned (or after POOL_DRAIN_MS), so no caller loses a connection mid-query.
+     * Drains on a background thread unless wait is set.
+     */
+    private static synchronized void retireFallbackPool(boolean wait) {
+        HikariDataSource pool = fallbackPool;
+        if (pool == null) {
+            return;
+        }
+        fallbackPool = null;
+        if (dataSource == pool) {
+            dataSource = null;
+        }
+
+        if (wait) {
+            drainAndClose(pool, Math.min(POOL_DRAIN_MS, 5000L));
+        } else {
+            Thread drainer = new Thread(() -> drainAndClose(pool, POOL_DRAIN_MS), "gemini-db-pool-drain");
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+    }
+
+    private static void drainAndClose(HikariDataSource pool, long timeoutMs) {
+        HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            while (poolBean != null && poolBean.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (poolBean != null && poolBean.getActiveConnections() > 0) {
+            LogUtil.warn("DatabaseService", "Closing fallback pool with " + poolBean.getActiveConnections()
+                    + " connections still in use");
+        }
+        pool.close();
+        LogUtil.info("DatabaseService", "Fallback connection pool closed");
+    }
+
+    /**
+     * Connection pool state for monitoring
+     */
+    public static synchronized Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connectionMethod", connectionMethod);
+        if (fallbackPool != null && fallbackPool.getHikariPoolMXBean() != null) {
+            HikariPoolMXBean pool = fallbackPool.getHikariPoolMXBean();
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("total", pool.getTotalConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+            stats.put("max", POOL_MAX_SIZE);
+        }
+        stats.put("statementCache", STATEMENT_CACHE);
+        stats.put("cachedStatementMetadata", columnLabelCache.size());
+        return stats;
+    }
 
-        throw new SQLException("All database connection attempts failed. Last error: " +
-                (lastException != null ? lastException.getMessage() : "Unknown"), lastException);
+    /**
+     * Close the fallback pool and forget the resolved DataSource
+     */
+    public static synchronized void shutdown() {
+        retireFallbackPool(true);
+        dataSource = null;
+        connectionMethod = "unresolved";
+        nextLookupAt = 0;
+        getApplicationContextMethod = null;
+        getBeanMethod = null;
+        jogetDatabaseProperties = null;
+        columnLabelCache.clear();
+        summaryCache.clear();
+        tableColumnsCache.clear();
+        if (statsExecutor != null) {
+            statsExecutor.shutdownNow();
+            statsExecutor = null;
+        }
+        courseStatisticsRefreshing.set(false);
+        courseStatistics = null;
+        chatTableReady = false;
     }
 
     /**
-     * Load database configuration from Joget's properties file
+     * Load database configuration from Joget's properties file (read once and cached)
      */
-    private static Properties loadJogetDatabaseProperties() {
+    private static synchronized Properties loadJogetDatabaseProperties() {
+        if (jogetDatabaseProperties != null) {
+            return jogetDatabaseProperties;
+        }
+
         Properties props = new Properties();
 
         String[] possiblePaths = {
@@ -116,6 +349,7 @@ public class DatabaseService {
                     try (InputStream input = Files.newInputStream(filePath)) {
                         props.load(input);
                         LogUtil.info("DatabaseService", "✅ Loaded Joget database config from: " + path);
+                        jogetDatabaseProperties = props;
                         return props;
                     }
                 }
@@ -125,6 +359,7 @@ public class DatabaseService {
         }
 
         LogUtil.warn("DatabaseService", "⚠️ Could not find Joget database properties file, using hardcoded values");
+        jogetDatabaseProperties = props;
         return props;
     }
 
@@ -146,6 +381,13 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * Maps the current row of a ResultSet to an object
+     */
+    public interface RowMapper<T> {
+        T mapRow(ResultSet rs, int rowNum) throws SQLException;
+    }
+
     /**
      * Execute a SELECT query and return results as List of Maps
      */
@@ -153,46 +395,289 @@ public class DatabaseService {
         List<Map<String, Object>> results = new ArrayList<>();
 
         try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+                PreparedStatement stmt = prepareStatement(conn, sql, params);
+                ResultSet rs = stmt.executeQuery()) {
+            String[] labels = getColumnLabels(sql, rs);
+            int capacity = labels.length * 4 / 3 + 1;
+
+            while (rs.next()) {
+                Map<String, Object> row = new HashMap<>(capacity);
+                for (int i = 0; i < labels.length; i++) {
+                    row.put(labels[i], rs.getObject(i + 1));
+                }
+                results.add(row);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Execute a SELECT query, mapping each row directly to an object
+     */
+    public static <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> results = new ArrayList<>();
+
+        try (Connection conn = getConnection();
+                PreparedStatement stmt = prepareStatement(conn, sql, params);
+                ResultSet rs = stmt.executeQuery()) {
+            int rowNum = 0;
+            while (rs.next()) {
+                results.add(mapper.mapRow(rs, rowNum++));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Receives rows one at a time from streamQuery; return false to stop reading
+     */
+    public interface RowHandler {
+        boolean handleRow(ResultSet rs, int rowNum) throws SQLException;
+    }
 
+    /**
+     * Execute a SELECT query on a forward-only cursor, handing each row to the
+     * handler without materialising the result. On MySQL Connector/J rows are
+     * streamed from the server one at a time; other drivers fetch in batches.
+     * Returns the number of rows handled.
+     */
+    public static int streamQuery(String sql, RowHandler handler, Object... params) throws SQLException {
+        try (Connection conn = getConnection();
+                PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            String driverName = conn.getMetaData().getDriverName();
+            boolean mysqlDriver = driverName != null && driverName.startsWith("MySQL Connector");
+            stmt.setFetchSize(mysqlDriver ? Integer.MIN_VALUE : STREAM_FETCH_SIZE);
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
 
+            int rowNum = 0;
             try (ResultSet rs = stmt.executeQuery()) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
-
                 while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        String columnName = metaData.getColumnLabel(i);
-                        Object value = rs.getObject(i);
-                        row.put(columnName, value);
+                    if (!handler.handleRow(rs, rowNum++)) {
+                        break;
                     }
-                    results.add(row);
                 }
             }
+            return rowNum;
         }
-
-        return results;
     }
 
     /**
-     * Execute INSERT, UPDATE, DELETE queries
+     * Execute a single-value COUNT query
      */
-    public static int executeUpdate(String sql, Object... params) throws SQLException {
+    public static long queryCount(String sql, Object... params) throws SQLException {
         try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+                PreparedStatement stmt = prepareStatement(conn, sql, params);
+                ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Column labels of a query, read from the ResultSet metadata only on first use
+     */
+    public static String[] getColumnLabels(String sql, ResultSet rs) throws SQLException {
+        String[] labels = STATEMENT_CACHE ? columnLabelCache.get(sql) : null;
+        if (labels == null) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            labels = new String[metaData.getColumnCount()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1);
+            }
+            // SELECT * can change shape when Joget alters a form table, so it is never cached
+            if (STATEMENT_CACHE && !sql.toUpperCase().contains("SELECT *")) {
+                if (columnLabelCache.size() >= METADATA_CACHE_SIZE) {
+                    columnLabelCache.clear(); // ad-hoc SQL should not grow the cache without bound
+                }
+                columnLabelCache.put(sql, labels);
+            }
+        }
+        return labels;
+    }
 
+    private static PreparedStatement prepareStatement(Connection conn, String sql, Object... params)
+            throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+
+    /**
+     * Column names of a table in definition order, read from metadata and cached
+     */
+    public static List<String> getTableColumns(String table) throws SQLException {
+        return tableColumnsCache.get(table, () -> {
+            try (Connection conn = getConnection();
+                    Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>(metaData.getColumnCount());
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnName(i));
+                }
+                return Collections.unmodifiableList(columns);
+            }
+        });
+    }
 
+    /**
+     * Execute INSERT, UPDATE, DELETE queries
+     */
+    public static int executeUpdate(String sql, Object... params) throws SQLException {
+        try (Connection conn = getConnection();
+                PreparedStatement stmt = prepareStatement(conn, sql, params)) {
             return stmt.executeUpdate();
         }
     }
 
+    /**
+     * Execute the same INSERT, UPDATE or DELETE for each parameter row as one
+     * JDBC batch in a single transaction
+     */
+    public static int[] executeBatch(String sql, List<Object[]> rows) throws SQLException {
+        try (Connection conn = getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Object[] params : rows) {
+                    for (int i = 0; i < params.length; i++) {
+                        stmt.setObject(i + 1, params[i]);
+                    }
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                conn.commit();
+                return counts;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // ========================================
+    // KEYSET PAGINATION
+    // ========================================
+
+    /**
+     * One page of rows and the cursor for the next page (null on the last page)
+     */
+    public static class Page {
+        private final List<Map<String, Object>> rows;
+        private final String nextCursor;
+
+        Page(List<Map<String, Object>> rows, String nextCursor) {
+            this.rows = rows;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Map<String, Object>> getRows() {
+            return rows;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Fetch one page newest first by (timeColumn, id), continuing after the cursor.
+     * The query seeks past the previous page instead of using OFFSET, so deep pages
+     * cost the same as the first. Rows with a NULL time sort last (MySQL orders NULL
+     * below every value) and are paged by id. Throws IllegalArgumentException for a bad cursor.
+     */
+    private static Page queryPage(String table, String columns, String filter, String timeColumn, int pageSize,
+            String cursor, Object... params) throws SQLException {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        List<Object> allParams = new ArrayList<>(Arrays.asList(params));
+        String sql = pageSql(table, columns, filter, timeColumn, limit, cursor, allParams);
+        List<Map<String, Object>> rows = executeQuery(sql, allParams.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+            Map<String, Object> last = rows.get(limit - 1);
+            nextCursor = encodeCursor(table, last.get(timeColumn), last.get("id"));
+        }
+        return new Page(rows, nextCursor);
+    }
+
+    /**
+     * SQL for one page of limit rows plus one (to detect a next page); the cursor's
+     * position is appended to params
+     */
+    static String pageSql(String table, String columns, String filter, String timeColumn, int limit, String cursor,
+            List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (filter != null) {
+            conditions.add("(" + filter + ")");
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            Object[] position = decodeCursor(table, cursor);
+            if (position[0] == null) {
+                conditions.add("(" + timeColumn + " IS NULL AND id < ?)");
+            } else {
+                conditions.add("(" + timeColumn + " < ? OR (" + timeColumn + " = ? AND id < ?) OR " + timeColumn
+                        + " IS NULL)");
+                params.add(position[0]);
+                params.add(position[0]);
+            }
+            params.add(position[1]);
+        }
+
+        return "SELECT " + columns + " FROM " + table
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY " + timeColumn + " DESC, id DESC LIMIT " + (limit + 1);
+    }
+
+    /**
+     * Opaque cursor: base64url of "table, time, id" so clients cannot depend on its contents.
+     * A NULL time is written as an empty field.
+     */
+    static String encodeCursor(String table, Object time, Object id) {
+        String timeValue;
+        if (time == null) {
+            timeValue = "";
+        } else if (time instanceof java.time.LocalDateTime) {
+            timeValue = Timestamp.valueOf((java.time.LocalDateTime) time).toString();
+        } else {
+            timeValue = String.valueOf(time);
+        }
+        String idValue = (id instanceof Number ? "n" : "s") + id;
+        String raw = table + "\n" + timeValue + "\n" + idValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Position {time, id} from a cursor made for the given table; throws IllegalArgumentException otherwise
+     */
+    static Object[] decodeCursor(String table, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+            if (parts.length == 3 && parts[0].equals(table) && parts[2].length() > 1) {
+                String idValue = parts[2].substring(1);
+                Object id = parts[2].charAt(0) == 'n' ? (Object) Long.valueOf(idValue) : idValue;
+                return new Object[] { parts[1].isEmpty() ? null : Timestamp.valueOf(parts[1]), id };
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
     // ========================================
     // COURSE MATERIALS METHODS
     // ========================================
@@ -208,15 +693,34 @@ public class DatabaseService {
         return executeQuery(sql);
     }
 
+    /**
+     * Page through course materials newest first, optionally for one course
+     */
+    public static Page getMaterialsPage(String course, int pageSize, String cursor) throws SQLException {
+        boolean byCourse = course != null && !course.trim().isEmpty();
+        return queryPage("app_fd_materials", "id, dateCreated, dateModified, createdBy, createdByName, " +
+                "c_select_course, c_course_fileupload, c_Uploaded_data, c_course_information",
+                byCourse ? "c_select_course = ?" : null, "dateCreated", pageSize, cursor,
+                byCourse ? new Object[] { course } : new Object[0]);
+    }
+
     /**
      * Search course materials by keyword (updated for real columns)
      */
     public static List<Map<String, Object>> searchMaterials(String keyword) throws SQLException {
+        if (useSearchIndex(TableSearchIndex.MATERIALS, keyword)) {
+            LogUtil.info("DatabaseService", "Searching materials index with keyword: " + keyword);
+            List<String> ids = TableSearchIndex.MATERIALS.search(keyword, SEARCH_ROWS);
+            return fetchByIds("SELECT id, dateCreated, dateModified, createdBy, createdByName, " +
+                    "c_select_course, c_course_fileupload, c_Uploaded_data, c_course_information " +
+                    "FROM app_fd_materials", ids);
+        }
+
         String sql = "SELECT id, dateCreated, dateModified, createdBy, createdByName, " +
                 "c_select_course, c_course_fileupload, c_Uploaded_data, c_course_information " +
                 "FROM app_fd_materials WHERE " +
                 "c_select_course LIKE ? OR c_course_information LIKE ? OR c_course_fileupload LIKE ? " +
-                "ORDER BY dateCreated DESC LIMIT 20";
+                "ORDER BY dateCreated DESC LIMIT " + SEARCH_ROWS;
         String searchPattern = "%" + keyword + "%";
 
         LogUtil.info("DatabaseService", "Searching materials with keyword: " + keyword);
@@ -235,19 +739,34 @@ public class DatabaseService {
     }
 
     /**
-     * Get materials summary for AI context (updated for real columns)
+     * Get materials summary for AI context, served from the summary cache when possible
      */
     public static String getMaterialsSummary(String searchTerm) throws SQLException {
-        List<Map<String, Object>> materials;
-
-        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            materials = searchMaterials(searchTerm);
-        } else {
-            materials = getAllMaterials();
-        }
+        String term = normalizeSearchTerm(searchTerm);
+        return summaryCache.get(summaryCacheKey("materials", term), () -> loadMaterialsSummary(term));
+    }
 
-        if (materials.isEmpty()) {
-            return "No course materials found" + (searchTerm != null ? " for: " + searchTerm : "") + ".";
+    /**
+     * Build the materials summary (updated for real columns). Only the first rows
+     * are read, with a separate COUNT(*) for the remainder.
+     */
+    private static String loadMaterialsSummary(String searchTerm) throws SQLException {
+        String where = "";
+        String order = " ORDER BY dateCreated DESC";
+        Object[] params = new Object[0];
+        List<String> rankedIds = null;
+        if (useSearchIndex(TableSearchIndex.MATERIALS, searchTerm)) {
+            rankedIds = TableSearchIndex.MATERIALS.search(searchTerm, SUMMARY_ROWS);
+            if (rankedIds.isEmpty()) {
+                return "No course materials found for: " + searchTerm + ".";
+            }
+            where = idFilter(rankedIds);
+            order = idOrder(rankedIds);
+            params = idParams(rankedIds);
+        } else if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            where = " WHERE c_select_course LIKE ? OR c_course_information LIKE ? OR c_course_fileupload LIKE ?";
+            String searchPattern = "%" + searchTerm + "%";
+            params = new Object[] { searchPattern, searchPattern, searchPattern };
         }
 
         StringBuilder summary = new StringBuilder();
@@ -257,41 +776,50 @@ public class DatabaseService {
         }
         summary.append(":\n\n");
 
-        for (int i = 0; i < Math.min(materials.size(), 10); i++) {
-            Map<String, Object> material = materials.get(i);
-
-            summary.append(i + 1).append(". ");
+        String sql = "SELECT c_select_course, c_course_fileupload, c_Uploaded_data, c_course_information, " +
+                "createdByName FROM app_fd_materials" + where + order + " LIMIT " + SUMMARY_ROWS;
+        int shown = streamQuery(sql, (rs, rowNum) -> {
+            summary.append(rowNum + 1).append(". ");
 
             // Course name
-            if (material.get("c_select_course") != null) {
-                summary.append("Course: ").append(material.get("c_select_course")).append("\n");
+            if (rs.getString("c_select_course") != null) {
+                summary.append("Course: ").append(rs.getString("c_select_course")).append("\n");
             }
 
             // File/material name
-            if (material.get("c_course_fileupload") != null) {
-                summary.append("   Material: ").append(material.get("c_course_fileupload")).append("\n");
+            if (rs.getString("c_course_fileupload") != null) {
+                summary.append("   Material: ").append(rs.getString("c_course_fileupload")).append("\n");
             }
 
             // Description/information
-            if (material.get("c_course_information") != null) {
-                summary.append("   Description: ").append(material.get("c_course_information")).append("\n");
+            if (rs.getString("c_course_information") != null) {
+                summary.append("   Description: ").append(rs.getString("c_course_information")).append("\n");
             }
 
             // Upload date
-            if (material.get("c_Uploaded_data") != null) {
-                summary.append("   Uploaded: ").append(material.get("c_Uploaded_data")).append("\n");
+            if (rs.getObject("c_Uploaded_data") != null) {
+                summary.append("   Uploaded: ").append(rs.getObject("c_Uploaded_data")).append("\n");
             }
 
             // Created by
-            if (material.get("createdByName") != null) {
-                summary.append("   Created by: ").append(material.get("createdByName")).append("\n");
+            if (rs.getString("createdByName") != null) {
+                summary.append("   Created by: ").append(rs.getString("createdByName")).append("\n");
             }
 
             summary.append("\n");
+            return true;
+        }, params);
+
+        if (shown == 0) {
+            return "No course materials found" + (searchTerm != null ? " for: " + searchTerm : "") + ".";
         }
 
-        if (materials.size() > 10) {
-            summary.append("... and ").append(materials.size() - 10).append(" more materials.\n");
+        if (shown == SUMMARY_ROWS) {
+            long total = rankedIds != null ? TableSearchIndex.MATERIALS.countMatches(searchTerm)
+                    : queryCount("SELECT COUNT(*) FROM app_fd_materials" + where, params);
+            if (total > SUMMARY_ROWS) {
+                summary.append("... and ").append(total - SUMMARY_ROWS).append(" more materials.\n");
+            }
         }
 
         return summary.toString();
@@ -313,17 +841,46 @@ public class DatabaseService {
         return executeQuery(sql);
     }
 
+    /**
+     * Page through assignments newest first, optionally by completion status or course
+     */
+    public static Page getAssignmentsPage(String status, String course, int pageSize, String cursor)
+            throws SQLException {
+        String filter = null;
+        Object[] params = new Object[0];
+        if (status != null && !status.trim().isEmpty()) {
+            filter = "c_assignment_completion = ?";
+            params = new Object[] { status };
+        } else if (course != null && !course.trim().isEmpty()) {
+            filter = "c_course = ?";
+            params = new Object[] { course };
+        }
+        return queryPage("app_fd_assignments", "id, dateCreated, dateModified, createdBy, createdByName, " +
+                "c_assignment_title, c_due_date, c_course, c_assignment_remarks_teacher, " +
+                "c_assignment_grade, c_assignment_completion, c_student_name, c_field3",
+                filter, "dateCreated", pageSize, cursor, params);
+    }
+
     /**
      * Search assignments by keyword (updated for real columns)
      */
     public static List<Map<String, Object>> searchAssignments(String keyword) throws SQLException {
+        if (useSearchIndex(TableSearchIndex.ASSIGNMENTS, keyword)) {
+            LogUtil.info("DatabaseService", "Searching assignments index with keyword: " + keyword);
+            List<String> ids = TableSearchIndex.ASSIGNMENTS.search(keyword, SEARCH_ROWS);
+            return fetchByIds("SELECT id, dateCreated, dateModified, createdBy, createdByName, " +
+                    "c_assignment_title, c_due_date, c_course, c_assignment_remarks_teacher, " +
+                    "c_assignment_grade, c_assignment_completion, c_student_name, c_field3 " +
+                    "FROM app_fd_assignments", ids);
+        }
+
         String sql = "SELECT id, dateCreated, dateModified, createdBy, createdByName, " +
                 "c_assignment_title, c_due_date, c_course, c_assignment_remarks_teacher, " +
                 "c_assignment_grade, c_assignment_completion, c_student_name, c_field3 " +
                 "FROM app_fd_assignments WHERE " +
                 "c_assignment_title LIKE ? OR c_course LIKE ? OR c_assignment_remarks_teacher LIKE ? OR c_field3 LIKE ? "
                 +
-                "ORDER BY c_due_date ASC LIMIT 20";
+                "ORDER BY c_due_date ASC LIMIT " + SEARCH_ROWS;
         String searchPattern = "%" + keyword + "%";
 
         LogUtil.info("DatabaseService", "Searching assignments with keyword: " + keyword);
@@ -372,19 +929,36 @@ public class DatabaseService {
     }
 
     /**
-     * Get assignments summary for AI context (updated for real columns)
+     * Get assignments summary for AI context, served from the summary cache when possible
      */
     public static String getAssignmentsSummary(String searchTerm) throws SQLException {
-        List<Map<String, Object>> assignments;
-
-        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            assignments = searchAssignments(searchTerm);
-        } else {
-            assignments = getAllAssignments();
-        }
+        String term = normalizeSearchTerm(searchTerm);
+        return summaryCache.get(summaryCacheKey("assignments", term), () -> loadAssignmentsSummary(term));
+    }
 
-        if (assignments.isEmpty()) {
-            return "No assignments found" + (searchTerm != null ? " for: " + searchTerm : "") + ".";
+    /**
+     * Build the assignments summary (updated for real columns). Only the first rows
+     * are read, with a separate COUNT(*) for the remainder.
+     */
+    private static String loadAssignmentsSummary(String searchTerm) throws SQLException {
+        String where = "";
+        String order = " ORDER BY c_due_date ASC, dateCreated DESC";
+        Object[] params = new Object[0];
+        List<String> rankedIds = null;
+        if (useSearchIndex(TableSearchIndex.ASSIGNMENTS, searchTerm)) {
+            rankedIds = TableSearchIndex.ASSIGNMENTS.search(searchTerm, SUMMARY_ROWS);
+            if (rankedIds.isEmpty()) {
+                return "No assignments found for: " + searchTerm + ".";
+            }
+            where = idFilter(rankedIds);
+            order = idOrder(rankedIds);
+            params = idParams(rankedIds);
+        } else if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            where = " WHERE c_assignment_title LIKE ? OR c_course LIKE ? OR c_assignment_remarks_teacher LIKE ? "
+                    + "OR c_field3 LIKE ?";
+            order = " ORDER BY c_due_date ASC";
+            String searchPattern = "%" + searchTerm + "%";
+            params = new Object[] { searchPattern, searchPattern, searchPattern, searchPattern };
         }
 
         StringBuilder summary = new StringBuilder();
@@ -394,117 +968,244 @@ public class DatabaseService {
         }
         summary.append(":\n\n");
 
-        for (int i = 0; i < Math.min(assignments.size(), 10); i++) {
-            Map<String, Object> assignment = assignments.get(i);
-
-            summary.append(i + 1).append(". ");
+        String sql = "SELECT c_assignment_title, c_course, c_due_date, c_assignment_completion, c_assignment_grade, " +
+                "c_field3, c_assignment_remarks_teacher, createdByName FROM app_fd_assignments" + where + order +
+                " LIMIT " + SUMMARY_ROWS;
+        int shown = streamQuery(sql, (rs, rowNum) -> {
+            summary.append(rowNum + 1).append(". ");
 
             // Assignment title
-            if (assignment.get("c_assignment_title") != null) {
-                summary.append("Title: ").append(assignment.get("c_assignment_title")).append("\n");
+            if (rs.getString("c_assignment_title") != null) {
+                summary.append("Title: ").append(rs.getString("c_assignment_title")).append("\n");
             }
 
             // Course
-            if (assignment.get("c_course") != null) {
-                summary.append("   Course: ").append(assignment.get("c_course")).append("\n");
+            if (rs.getString("c_course") != null) {
+                summary.append("   Course: ").append(rs.getString("c_course")).append("\n");
             }
 
             // Due date
-            if (assignment.get("c_due_date") != null) {
-                summary.append("   Due Date: ").append(assignment.get("c_due_date")).append("\n");
+            if (rs.getObject("c_due_date") != null) {
+                summary.append("   Due Date: ").append(rs.getObject("c_due_date")).append("\n");
             }
 
             // Completion status
-            if (assignment.get("c_assignment_completion") != null) {
-                summary.append("   Status: ").append(assignment.get("c_assignment_completion")).append("\n");
+            if (rs.getString("c_assignment_completion") != null) {
+                summary.append("   Status: ").append(rs.getString("c_assignment_completion")).append("\n");
             }
 
             // Grade
-            if (assignment.get("c_assignment_grade") != null) {
-                summary.append("   Grade: ").append(assignment.get("c_assignment_grade")).append("\n");
+            if (rs.getString("c_assignment_grade") != null) {
+                summary.append("   Grade: ").append(rs.getString("c_assignment_grade")).append("\n");
             }
 
             // Additional info (field3)
-            if (assignment.get("c_field3") != null && !assignment.get("c_field3").toString().trim().isEmpty()) {
-                summary.append("   Info: ").append(assignment.get("c_field3")).append("\n");
+            String field3 = rs.getString("c_field3");
+            if (field3 != null && !field3.trim().isEmpty()) {
+                summary.append("   Info: ").append(field3).append("\n");
             }
 
             // Teacher remarks
-            if (assignment.get("c_assignment_remarks_teacher") != null) {
-                summary.append("   Teacher Remarks: ").append(assignment.get("c_assignment_remarks_teacher"))
+            if (rs.getString("c_assignment_remarks_teacher") != null) {
+                summary.append("   Teacher Remarks: ").append(rs.getString("c_assignment_remarks_teacher"))
                         .append("\n");
             }
 
             // Created by
-            if (assignment.get("createdByName") != null) {
-                summary.append("   Created by: ").append(assignment.get("createdByName")).append("\n");
+            if (rs.getString("createdByName") != null) {
+                summary.append("   Created by: ").append(rs.getString("createdByName")).append("\n");
             }
 
             summary.append("\n");
+            return true;
+        }, params);
+
+        if (shown == 0) {
+            return "No assignments found" + (searchTerm != null ? " for: " + searchTerm : "") + ".";
         }
 
-        if (assignments.size() > 10) {
-            summary.append("... and ").append(assignments.size() - 10).append(" more assignments.\n");
+        if (shown == SUMMARY_ROWS) {
+            long total = rankedIds != null ? TableSearchIndex.ASSIGNMENTS.countMatches(searchTerm)
+                    : queryCount("SELECT COUNT(*) FROM app_fd_assignments" + where, params);
+            if (total > SUMMARY_ROWS) {
+                summary.append("... and ").append(total - SUMMARY_ROWS).append(" more assignments.\n");
+            }
         }
 
         return summary.toString();
     }
 
     /**
-     * Get unique courses from both tables
+     * Whether a keyword search should go through the search index (terms made
+     * only of stop words or single characters fall back to LIKE)
      */
-    public static List<String> getAllCourses() throws SQLException {
-        Set<String> courses = new HashSet<>();
+    private static boolean useSearchIndex(TableSearchIndex index, String searchTerm) {
+        // Until the first background build finishes, searches use the LIKE queries
+        return USE_SEARCH_INDEX && searchTerm != null && !SearchIndex.tokenize(searchTerm).isEmpty()
+                && index.isReady();
+    }
+
+    /**
+     * Load rows by id, keeping the order of the given ids (best match first)
+     */
+    private static List<Map<String, Object>> fetchByIds(String select, List<String> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return executeQuery(select + idFilter(ids) + idOrder(ids), idParams(ids));
+    }
+
+    private static String idFilter(List<String> ids) {
+        return " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+    }
+
+    private static String idOrder(List<String> ids) {
+        return " ORDER BY FIELD(id, " + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+    }
+
+    private static Object[] idParams(List<String> ids) {
+        List<Object> params = new ArrayList<>(ids);
+        params.addAll(ids);
+        return params.toArray();
+    }
 
-        // Get courses from materials
-        String materialsSql = "SELECT DISTINCT c_select_course FROM app_fd_materials WHERE c_select_course IS NOT NULL AND c_select_course != ''";
-        List<Map<String, Object>> materialsCourses = executeQuery(materialsSql);
-        for (Map<String, Object> row : materialsCourses) {
-            courses.add(row.get("c_select_course").toString());
+    /**
+     * Cache key for a summary: table, query type and case-folded search terms
+     * (LIKE matching is case-insensitive, so the results are the same)
+     */
+    private static String summaryCacheKey(String table, String searchTerm) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return table + "|all|" + (searchTerm == null ? "" : "filtered");
         }
+        return table + "|search|" + searchTerm.toLowerCase();
+    }
+
+    /**
+     * Trim and collapse whitespace so equivalent search terms share a cache entry
+     */
+    private static String normalizeSearchTerm(String searchTerm) {
+        return searchTerm == null ? null : searchTerm.trim().replaceAll("\\s+", " ");
+    }
 
-        // Get courses from assignments
-        String assignmentsSql = "SELECT DISTINCT c_course FROM app_fd_assignments WHERE c_course IS NOT NULL AND c_course != ''";
-        List<Map<String, Object>> assignmentsCourses = executeQuery(assignmentsSql);
-        for (Map<String, Object> row : assignmentsCourses) {
-            courses.add(row.get("c_course").toString());
+    /**
+     * Drop cached summaries for a table after the plugin writes to it
+     */
+    public static void invalidateSummaries(String table) {
+        summaryCache.invalidateIf(key -> key.startsWith(table + "|"));
+        courseStatisticsLoadedAt = 0; // refreshed in the background on the next read
+        if ("materials".equals(table)) {
+            TableSearchIndex.MATERIALS.requestRefresh();
+            MaterialContentIndex.requestRefresh();
+        } else if ("assignments".equals(table)) {
+            TableSearchIndex.ASSIGNMENTS.requestRefresh();
         }
+    }
+
+    /**
+     * Summary cache counters for monitoring
+     */
+    public static Map<String, Object> getSummaryCacheStats() {
+        return summaryCache.getStats();
+    }
+
+    /**
+     * Get unique courses from both tables, served from the course statistics snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> getAllCourses() throws SQLException {
+        return new ArrayList<>((List<String>) getCourseStatistics().get("coursesList"));
+    }
 
-        return new ArrayList<>(courses);
+    /**
+     * Load unique courses from both tables in one round trip. Each table is DISTINCT on its
+     * own and the two lists are merged in Java with exact string equality, as the previous
+     * two-query version did; a SQL UNION would also merge names that only differ in case or
+     * trailing spaces under the column collation.
+     */
+    private static List<String> loadAllCourses() throws SQLException {
+        String sql = "SELECT DISTINCT c_select_course AS course FROM app_fd_materials " +
+                "WHERE c_select_course IS NOT NULL AND c_select_course != '' " +
+                "UNION ALL SELECT DISTINCT c_course FROM app_fd_assignments WHERE c_course IS NOT NULL AND c_course != ''";
+        return new ArrayList<>(new LinkedHashSet<>(query(sql, (rs, rowNum) -> rs.getString(1))));
     }
 
     /**
-     * Get course statistics
+     * Get course statistics from a snapshot refreshed in the background once it is
+     * older than gemini.stats.ttlMs; only the very first call waits for the database
      */
     public static Map<String, Object> getCourseStatistics() throws SQLException {
-        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> snapshot = courseStatistics;
+        if (snapshot == null) {
+            synchronized (courseStatisticsRefreshing) {
+                snapshot = courseStatistics;
+                if (snapshot == null) {
+                    snapshot = loadCourseStatistics();
+                }
+            }
+        } else if (System.currentTimeMillis() - courseStatisticsLoadedAt >= STATS_TTL_MS) {
+            refreshCourseStatisticsInBackground();
+        }
+        return new HashMap<>(snapshot);
+    }
 
-        // Count materials
-        String materialsCountSql = "SELECT COUNT(*) as count FROM app_fd_materials";
-        List<Map<String, Object>> materialsCount = executeQuery(materialsCountSql);
-        stats.put("totalMaterials", materialsCount.get(0).get("count"));
+    /**
+     * Compute course statistics: all counts in one conditional-aggregation query plus the course list
+     */
+    private static Map<String, Object> loadCourseStatistics() throws SQLException {
+        Map<String, Object> stats = new HashMap<>();
 
-        // Count assignments
-        String assignmentsCountSql = "SELECT COUNT(*) as count FROM app_fd_assignments";
-        List<Map<String, Object>> assignmentsCount = executeQuery(assignmentsCountSql);
-        stats.put("totalAssignments", assignmentsCount.get(0).get("count"));
+        String countsSql = "SELECT (SELECT COUNT(*) FROM app_fd_materials) AS totalMaterials, " +
+                "COUNT(*) AS totalAssignments, " +
+                "COALESCE(SUM(CASE WHEN c_assignment_completion = 'yes' THEN 1 ELSE 0 END), 0) AS completedAssignments, " +
+                "COALESCE(SUM(CASE WHEN c_assignment_grade IS NOT NULL AND c_assignment_grade != '' THEN 1 ELSE 0 END), 0) "
+                + "AS gradedAssignments " +
+                "FROM app_fd_assignments";
+        streamQuery(countsSql, (rs, rowNum) -> {
+            stats.put("totalMaterials", rs.getLong("totalMaterials"));
+            stats.put("totalAssignments", rs.getLong("totalAssignments"));
+            stats.put("completedAssignments", rs.getLong("completedAssignments"));
+            stats.put("gradedAssignments", rs.getLong("gradedAssignments"));
+            return false;
+        });
 
-        // Count unique courses
-        List<String> courses = getAllCourses();
+        List<String> courses = loadAllCourses();
         stats.put("totalCourses", courses.size());
-        stats.put("coursesList", courses);
+        stats.put("coursesList", Collections.unmodifiableList(courses));
 
-        // Count completed assignments
-        String completedSql = "SELECT COUNT(*) as count FROM app_fd_assignments WHERE c_assignment_completion = 'yes'";
-        List<Map<String, Object>> completedCount = executeQuery(completedSql);
-        stats.put("completedAssignments", completedCount.get(0).get("count"));
+        courseStatistics = stats;
+        courseStatisticsLoadedAt = System.currentTimeMillis();
+        return stats;
+    }
 
-        // Count graded assignments
-        String gradedSql = "SELECT COUNT(*) as count FROM app_fd_assignments WHERE c_assignment_grade IS NOT NULL AND c_assignment_grade != ''";
-        List<Map<String, Object>> gradedCount = executeQuery(gradedSql);
-        stats.put("gradedAssignments", gradedCount.get(0).get("count"));
+    private static void refreshCourseStatisticsInBackground() {
+        if (!courseStatisticsRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getStatsExecutor().execute(() -> {
+                try {
+                    loadCourseStatistics();
+                } catch (Exception e) {
+                    LogUtil.warn("DatabaseService", "Course statistics refresh failed, serving previous snapshot: "
+                            + e.getMessage());
+                } finally {
+                    courseStatisticsRefreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            courseStatisticsRefreshing.set(false);
+        }
+    }
 
-        return stats;
+    private static synchronized ExecutorService getStatsExecutor() {
+        if (statsExecutor == null) {
+            statsExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gemini-db-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return statsExecutor;
     }
 
     // ========================================
@@ -537,21 +1238,104 @@ public class DatabaseService {
     }
 
     /**
-     * Save chat conversation to database
+     * Save chat conversation to database (queued and written in batches by ChatHistoryWriter).
+     * Returns true when the row was queued, false when it was written before returning.
      */
-    public static void saveChatConversation(String sessionId, String userPrompt, String aiResponse, String model)
+    public static boolean saveChatConversation(String sessionId, String userPrompt, String aiResponse, String model)
             throws SQLException {
-        createChatTableIfNotExists();
-        String sql = "INSERT INTO gemini_chat_history (sessionId, userPrompt, aiResponse, model, timestamp) VALUES (?, ?, ?, ?, NOW())";
-        executeUpdate(sql, sessionId, userPrompt, aiResponse, model);
+        return ChatHistoryWriter.enqueue(sessionId, userPrompt, aiResponse, model);
+    }
+
+    /**
+     * Insert chat conversations in one JDBC batch; each row is
+     * {sessionId, userPrompt, aiResponse, model, timestamp}
+     */
+    static void insertChatConversations(List<Object[]> rows) throws SQLException {
+        ensureChatHistoryTable();
+        String sql = "INSERT INTO gemini_chat_history (sessionId, userPrompt, aiResponse, model, timestamp) VALUES (?, ?, ?, ?, ?)";
+        executeBatch(sql, rows);
     }
 
     /**
      * Get chat history for a session
      */
     public static List<Map<String, Object>> getChatHistory(String sessionId, int limit) throws SQLException {
+        // Taken before the query: a row committed in between is in both and merged once
+        List<Object[]> pending = ChatHistoryWriter.pendingRows(sessionId);
         String sql = "SELECT * FROM gemini_chat_history WHERE sessionId = ? ORDER BY timestamp DESC LIMIT ?";
-        return executeQuery(sql, sessionId, limit);
+        List<Map<String, Object>> rows = withPendingRows(pending, executeQuery(sql, sessionId, limit));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, Math.max(0, limit))) : rows;
+    }
+
+    /**
+     * Page through a session's chat history newest first. Conversations still waiting in
+     * the write-behind queue are added to the top of the first page (with a null id).
+     */
+    public static Page getChatHistoryPage(String sessionId, int pageSize, String cursor) throws SQLException {
+        boolean firstPage = cursor == null || cursor.isEmpty();
+        List<Object[]> pending = firstPage ? ChatHistoryWriter.pendingRows(sessionId)
+                : Collections.<Object[]>emptyList();
+        Page page = queryPage("gemini_chat_history", "id, sessionId, userPrompt, aiResponse, model, timestamp",
+                "sessionId = ?", "timestamp", pageSize, cursor, sessionId);
+        return pending.isEmpty() ? page : new Page(withPendingRows(pending, page.getRows()), page.getNextCursor());
+    }
+
+    /**
+     * Put pending rows (oldest first) newest first in front of the stored rows,
+     * skipping any that were committed before the stored rows were read
+     */
+    static List<Map<String, Object>> withPendingRows(List<Object[]> pending, List<Map<String, Object>> stored) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(pending.size() + stored.size());
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Object[] row = pending.get(i);
+            if (!containsConversation(stored, row)) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("id", null);
+                map.put("sessionId", row[0]);
+                map.put("userPrompt", row[1]);
+                map.put("aiResponse", row[2]);
+                map.put("model", row[3]);
+                map.put("timestamp", row[4]);
+                rows.add(map);
+            }
+        }
+        rows.addAll(stored);
+        return rows;
+    }
+
+    private static boolean containsConversation(List<Map<String, Object>> stored, Object[] row) {
+        long time = ((Timestamp) row[4]).getTime();
+        for (Map<String, Object> map : stored) {
+            Object storedTime = map.get("timestamp");
+            if (storedTime instanceof java.time.LocalDateTime) {
+                storedTime = Timestamp.valueOf((java.time.LocalDateTime) storedTime);
+            }
+            // DATETIME keeps whole seconds, so compare times to within a second
+            if (storedTime instanceof java.util.Date && Math.abs(((java.util.Date) storedTime).getTime() - time) < 1000
+                    && Objects.equals(map.get("userPrompt"), row[1]) && Objects.equals(map.get("aiResponse"), row[2])
+                    && Objects.equals(map.get("model"), row[3])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create the chat history table once per bundle start
+     */
+    static void ensureChatHistoryTable() throws SQLException {
+        if (!chatTableReady) {
+            synchronized (DatabaseService.class) {
+                if (!chatTableReady) {
+                    createChatTableIfNotExists();
+                    addChatHistoryIndexIfMissing();
+                    chatTableReady = true;
+                }
+            }
+        }
     }
 
     /**
@@ -566,34 +1350,41 @@ public class DatabaseService {
                 "model VARCHAR(100), " +
                 "timestamp DATETIME, " +
                 "INDEX idx_session (sessionId), " +
-                "INDEX idx_timestamp (timestamp)" +
+                "INDEX idx_timestamp (timestamp), " +
+                "INDEX idx_session_timestamp (sessionId, timestamp, id)" +
                 ")";
         executeUpdate(sql);
     }
 
     /**
-     * Get database info
+     * Add the paging index to chat history tables created before it was part of the
+     * CREATE TABLE. Without it history pages are sorted with a filesort; failing to add
+     * it (e.g. no ALTER privilege) is logged but does not stop chat history from working.
      */
-    public static Map<String, Object> getDatabaseInfo() throws SQLException {
-        Map<String, Object> info = new HashMap<>();
-
-        String connectionMethod = "unknown";
+    private static void addChatHistoryIndexIfMissing() {
         try {
-            Class<?> appUtilClass = Class.forName("org.joget.apps.app.service.AppUtil");
-            Object appContext = appUtilClass.getMethod("getApplicationContext").invoke(null);
-            Object dataSource = appContext.getClass().getMethod("getBean", String.class, Class.class)
-                    .invoke(appContext, "setupDataSource", javax.sql.DataSource.class);
-
-            Connection testConn = ((javax.sql.DataSource) dataSource).getConnection();
-            if (testConn != null && !testConn.isClosed()) {
-                connectionMethod = "joget_datasource";
-                testConn.close();
+            try (Connection conn = getConnection();
+                    ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, "gemini_chat_history",
+                            false, true)) {
+                while (rs.next()) {
+                    if ("idx_session_timestamp".equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return;
+                    }
+                }
             }
-        } catch (Exception e) {
-            connectionMethod = "direct_connection_fallback";
+            LogUtil.info("DatabaseService", "Adding index idx_session_timestamp to gemini_chat_history");
+            executeUpdate("CREATE INDEX idx_session_timestamp ON gemini_chat_history (sessionId, timestamp, id)");
+        } catch (SQLException e) {
+            LogUtil.warn("DatabaseService", "Could not add index idx_session_timestamp to gemini_chat_history; "
+                    + "chat history paging will be slower: " + e.getMessage());
         }
+    }
 
-        info.put("connectionMethod", connectionMethod);
+    /**
+     * Get database info
+     */
+    public static Map<String, Object> getDatabaseInfo() throws SQLException {
+        Map<String, Object> info = new HashMap<>();
 
         Properties dbProps = loadJogetDatabaseProperties();
         boolean usingJogetConfig = dbProps != null && !dbProps.isEmpty() && dbProps.containsKey("workflowUrl");
@@ -601,6 +1392,7 @@ public class DatabaseService {
         info.put("configurationSource", usingJogetConfig ? "joget_properties" : "hardcoded");
 
         try (Connection conn = getConnection()) {
+            info.put("connectionMethod", connectionMethod);
             DatabaseMetaData metaData = conn.getMetaData();
 
             info.put("databaseProductName", metaData.getDatabaseProductName());
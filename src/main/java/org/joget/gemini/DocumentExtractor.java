@@ -0,0 +1,723 @@
+package org.joget.gemini;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipFile;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Shared text extraction for uploaded documents (grading, evaluation, chat retrieval)
+ * ✅ DETECT: Format chosen from the file's magic bytes, not just its extension
+ * ✅ BOUNDED: Extractions run on a fixed-size pool with a bounded queue
+ * ✅ LIMITS: Per-document file size, output length (characters or tokens) and time limits
+ * ✅ PDF PAGES: Large PDFs are split into page ranges extracted in parallel and streamed in page order
+ * ✅ MEMORY: Large PDFs are parsed through a PDFBox scratch file; large documents are extracted a few at a time
+ * ✅ PLUGGABLE: Extractors registered per format; results cached by ExtractedTextCache
+ * ✅ METRICS: Counts, failures, timeouts, time and output size per format
+ */
+public class DocumentExtractor {
+
+    // Limits (override with -Dgemini.extract.* system properties)
+    private static final int THREADS = Integer.getInteger("gemini.extract.threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_SIZE = Integer.getInteger("gemini.extract.queueSize", 50);
+    private static final long TIMEOUT_MS = Long.getLong("gemini.extract.timeoutMs", 60000L);
+    private static final long MAX_FILE_BYTES = Long.getLong("gemini.extract.maxFileMb", 50L) * 1024 * 1024;
+    private static final int MAX_CHARS = Integer.getInteger("gemini.extract.maxChars", 2000000);
+    // Optional output budget in tokens (~4 characters each, as in GeminiRateLimiter); 0 = characters only
+    private static final int MAX_TOKENS = Integer.getInteger("gemini.extract.maxTokens", 0);
+    // Stream DOCX XML with StAX (DocxTextExtractor); false uses the POI XWPFDocument model
+    private static final boolean DOCX_STREAMING = !"false".equals(System.getProperty("gemini.extract.docx.streaming"));
+
+    // Page-parallel PDF extraction (override with -Dgemini.extract.pdf.* system properties)
+    private static final int PDF_PARALLELISM = Integer.getInteger("gemini.extract.pdf.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    private static final int PDF_PARALLEL_MIN_PAGES = Integer.getInteger("gemini.extract.pdf.parallelMinPages", 40);
+    private static final int PDF_PAGES_PER_TASK = Math.max(1,
+            Integer.getInteger("gemini.extract.pdf.pagesPerTask", 20));
+
+    // Large documents (override with -Dgemini.extract.large.* system properties)
+    private static final long LARGE_FILE_BYTES = Long.getLong("gemini.extract.large.thresholdMb", 10L) * 1024 * 1024;
+    private static final int LARGE_CONCURRENCY = Math.max(1, Integer.getInteger("gemini.extract.large.concurrency", 2));
+    // "mixed" keeps up to scratchMemoryMb per PDF in heap before spilling to disk; "tempfile" uses disk only
+    private static final String SCRATCH_MODE = System.getProperty("gemini.extract.large.scratchMode", "mixed");
+    private static final long SCRATCH_MEMORY_BYTES = Long.getLong("gemini.extract.large.scratchMemoryMb", 16L)
+            * 1024 * 1024;
+    private static final String SCRATCH_DIR = System.getProperty("gemini.extract.large.scratchDir");
+
+    private static final String UPLOAD_PATH = "wflow/app_formuploads/"; // Default Joget upload path
+
+    public enum Format { PDF, DOCX, TXT, UNKNOWN }
+
+    /**
+     * Extracts up to maxChars characters of text from one format
+     */
+    public interface FormatExtractor {
+        String extract(Path file, int maxChars) throws IOException;
+    }
+
+    private static final Map<Format, FormatExtractor> extractors = new EnumMap<>(Format.class);
+    // Extractor name per format, part of the cache key so switching extractors re-extracts
+    private static final Map<Format, String> extractorNames = new EnumMap<>(Format.class);
+    private static final Map<Format, FormatStats> formatStats = new EnumMap<>(Format.class);
+    private static ThreadPoolExecutor extractionPool;
+    private static ForkJoinPool pdfPool;
+    // Held for the whole extraction of a file above LARGE_FILE_BYTES, and by each parallel worker parsing one
+    private static final Semaphore largeDocuments = new Semaphore(LARGE_CONCURRENCY, true);
+
+    private static final AtomicLong pdfPages = new AtomicLong();
+    private static final AtomicLong pdfParallelRuns = new AtomicLong();
+    private static final AtomicLong pdfEarlyStops = new AtomicLong();
+    private static final AtomicLong pdfScratchLoads = new AtomicLong();
+
+    /**
+     * Receives PDF text one page at a time, in page order. Return false to stop extraction.
+     */
+    public interface PageConsumer {
+        boolean accept(int pageNumber, String text) throws IOException;
+    }
+
+    static {
+        register(Format.PDF, "pdfbox", DocumentExtractor::extractPdf);
+        if (DOCX_STREAMING) {
+            register(Format.DOCX, "stax", DocxTextExtractor::extract);
+        } else {
+            register(Format.DOCX, "poi", DocumentExtractor::extractDocx);
+        }
+        register(Format.TXT, "text", DocumentExtractor::extractTxt);
+        for (Format format : Format.values()) {
+            formatStats.put(format, new FormatStats());
+        }
+    }
+
+    /**
+     * Replace the extractor used for a format. The name identifies the extractor in the
+     * text cache (letters and digits only), so text cached from another extractor is not reused.
+     */
+    public static synchronized void register(Format format, String name, FormatExtractor extractor) {
+        extractors.put(format, extractor);
+        extractorNames.put(format, name);
+    }
+
+    /**
+     * Locate an uploaded file in the known Joget upload directories: first under the
+     * form's folder and record ID, then the record ID alone, then the upload root
+     */
+    public static Path findUpload(String filename, String recordId, String formFolder) {
+        String[] possiblePaths = {
+                // Primary paths with form folder and record ID subdirectory (Joget's actual structure)
+                UPLOAD_PATH + formFolder + "/" + recordId + "/" + filename,
+                "./wflow/app_formuploads/" + formFolder + "/" + recordId + "/" + filename,
+                System.getProperty("user.dir") + "/wflow/app_formuploads/" + formFolder + "/" + recordId + "/"
+                        + filename,
+
+                // Alternative paths if the form subfolder doesn't exist
+                UPLOAD_PATH + recordId + "/" + filename,
+                "./wflow/app_formuploads/" + recordId + "/" + filename,
+                System.getProperty("user.dir") + "/wflow/app_formuploads/" + recordId + "/" + filename,
+
+                // Fallback to old paths (for backward compatibility)
+                UPLOAD_PATH + filename,
+                "uploads/" + filename,
+                "../uploads/" + filename,
+                "./wflow/app_formuploads/" + filename,
+                System.getProperty("user.dir") + "/wflow/app_formuploads/" + filename
+        };
+
+        for (String pathStr : possiblePaths) {
+            Path testPath = Paths.get(pathStr);
+            LogUtil.info("DocumentExtractor", "Checking path: " + testPath.toString());
+            if (Files.exists(testPath)) {
+                LogUtil.info("DocumentExtractor", "✅ Found file at: " + testPath.toString());
+                return testPath;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extract the text of a document. Throws UnsupportedFormatException for formats
+     * without an extractor, and IOException when a limit is exceeded or parsing fails.
+     */
+    public static String extract(Path file, String filename) throws IOException {
+        long size = Files.size(file);
+        if (size > MAX_FILE_BYTES) {
+            throw new IOException("File too large for text extraction: " + size / (1024 * 1024) + "MB (limit "
+                    + MAX_FILE_BYTES / (1024 * 1024) + "MB)");
+        }
+
+        Format format = detectFormat(file, filename);
+        FormatExtractor extractor;
+        String extractorName;
+        synchronized (DocumentExtractor.class) {
+            extractor = extractors.get(format);
+            extractorName = extractorNames.get(format);
+        }
+        if (extractor == null) {
+            throw new UnsupportedFormatException(getFileExtension(filename));
+        }
+
+        // Plain text is cheaper to read than to hash, so it skips the cache
+        if (format == Format.TXT) {
+            return runBounded(format, extractor, file);
+        }
+        // The output budget is part of the key: raising it must not serve previously truncated text
+        String cacheType = format.name().toLowerCase() + "-" + extractorName + "-" + maxChars();
+        return ExtractedTextCache.get(file, cacheType, path -> runBounded(format, extractor, path));
+    }
+
+    /**
+     * Detect the format from the leading bytes, falling back to the extension for plain text
+     */
+    static Format detectFormat(Path file, String filename) throws IOException {
+        byte[] head = new byte[4096];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.read(head);
+        }
+        if (length >= 5 && head[0] == '%' && head[1] == 'P' && head[2] == 'D' && head[3] == 'F' && head[4] == '-') {
+            return Format.PDF;
+        }
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            // DOCX is a ZIP package containing the main document part
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                return zip.getEntry("word/document.xml") != null ? Format.DOCX : Format.UNKNOWN;
+            } catch (IOException e) {
+                return Format.UNKNOWN;
+            }
+        }
+        if ("txt".equalsIgnoreCase(getFileExtension(filename))) {
+            for (int i = 0; i < length; i++) {
+                if (head[i] == 0) {
+                    return Format.UNKNOWN; // binary content with a .txt name
+                }
+            }
+            return Format.TXT;
+        }
+        return Format.UNKNOWN;
+    }
+
+    /**
+     * Run an extraction on the shared pool, waiting at most TIMEOUT_MS
+     */
+    private static String runBounded(Format format, FormatExtractor extractor, Path file) throws IOException {
+        FormatStats stats = formatStats.get(format);
+        Future<String> future;
+        try {
+            future = getExtractionPool().submit(() -> extractWithPermit(extractor, file));
+        } catch (RejectedExecutionException e) {
+            stats.rejected.incrementAndGet();
+            throw new IOException("Too many documents being extracted, try again later");
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            String text = future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            stats.record(System.currentTimeMillis() - startTime, text.length(), Files.size(file));
+            LogUtil.info("DocumentExtractor", "Extracted " + format + " content: " + text.length() + " characters in "
+                    + (System.currentTimeMillis() - startTime) + "ms");
+            return text;
+        } catch (TimeoutException e) {
+            // PDF and streaming DOCX extraction stop at the next page or paragraph; the pool size bounds the rest
+            future.cancel(true);
+            stats.timeouts.incrementAndGet();
+            throw new IOException(format + " extraction timed out after " + TIMEOUT_MS + "ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting document", e);
+        } catch (ExecutionException e) {
+            stats.failures.incrementAndGet();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not extract " + format + " text: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Run an extractor, first taking a large-document permit when the file is above
+     * LARGE_FILE_BYTES. Waiting happens on the pool thread, so it counts towards TIMEOUT_MS.
+     */
+    private static String extractWithPermit(FormatExtractor extractor, Path file) throws IOException {
+        if (Files.size(file) < LARGE_FILE_BYTES) {
+            return extractor.extract(file, maxChars());
+        }
+        try {
+            largeDocuments.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to extract large document");
+        }
+        try {
+            return extractor.extract(file, maxChars());
+        } finally {
+            largeDocuments.release();
+        }
+    }
+
+    /**
+     * Output budget in characters: gemini.extract.maxChars, lowered by gemini.extract.maxTokens when set
+     */
+    static int maxChars() {
+        if (MAX_TOKENS > 0) {
+            return (int) Math.min(MAX_CHARS, MAX_TOKENS * 4L);
+        }
+        return MAX_CHARS;
+    }
+
+    private static String extractPdf(Path file, int maxChars) throws IOException {
+        StringBuilder content = new StringBuilder();
+        streamPdfPages(file, (page, text) -> {
+            int room = maxChars - content.length();
+            if (text.length() > room) {
+                content.append(text, 0, room);
+                LogUtil.info("DocumentExtractor", "PDF text truncated at " + maxChars + " characters (page "
+                        + page + ")");
+                return false;
+            }
+            content.append(text);
+            return content.length() < maxChars;
+        });
+        return content.toString();
+    }
+
+    /**
+     * Extract a PDF page by page, handing each page's text to the consumer in page order.
+     * Documents with at least PDF_PARALLEL_MIN_PAGES pages are split into ranges of
+     * PDF_PAGES_PER_TASK pages. Up to PDF_PARALLELISM - 1 pool workers each parse the file
+     * once and take ranges in turn, at most two ranges per participant ahead of the consumer;
+     * the calling thread reuses the document it counted the pages with and extracts any
+     * range no worker has taken yet. Remaining ranges are skipped once the consumer stops.
+     * For a file above LARGE_FILE_BYTES each worker needs a free large-document permit,
+     * so extra copies of a large PDF never exceed LARGE_CONCURRENCY parses in total.
+     */
+    public static void streamPdfPages(Path file, PageConsumer consumer) throws IOException {
+        try (PDDocument document = loadPdf(file)) {
+            int pages = document.getNumberOfPages();
+            PDFTextStripper stripper = new PDFTextStripper();
+            if (pages < PDF_PARALLEL_MIN_PAGES || PDF_PARALLELISM < 2) {
+                for (int page = 1; page <= pages; page++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("PDF extraction interrupted at page " + page);
+                    }
+                    pdfPages.incrementAndGet();
+                    if (!consumer.accept(page, pageText(stripper, document, page))) {
+                        pdfEarlyStops.incrementAndGet();
+                        return;
+                    }
+                }
+                return;
+            }
+
+            pdfParallelRuns.incrementAndGet();
+            PdfRanges ranges = new PdfRanges(pages, PDF_PARALLELISM);
+            ForkJoinPool pool = getPdfPool();
+            List<ForkJoinTask<?>> workers = new ArrayList<>();
+            try {
+                boolean large = Files.size(file) >= LARGE_FILE_BYTES;
+                for (int i = 1; i < Math.min(PDF_PARALLELISM, ranges.count); i++) {
+                    workers.add(pool.submit(() -> extractPdfRangesWithPermit(file, ranges, large)));
+                }
+                int page = 1;
+                for (int range = 0; range < ranges.count; range++) {
+                    List<String> texts = ranges.claim(range)
+                            ? extractPdfRange(stripper, document, ranges, range)
+                            : awaitPdfRange(ranges.results.get(range));
+                    for (String text : texts) {
+                        if (!consumer.accept(page++, text)) {
+                            pdfEarlyStops.incrementAndGet();
+                            return;
+                        }
+                    }
+                    ranges.consumed(range);
+                }
+            } finally {
+                ranges.stop();
+                for (ForkJoinTask<?> worker : workers) {
+                    worker.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Page ranges of one parallel extraction: which range is taken next, how far the
+     * consumer has got, and each range's text once extracted
+     */
+    private static final class PdfRanges {
+        final int pages;
+        final int count;
+        final List<CompletableFuture<List<String>>> results;
+        private final int lookAhead;
+        private int next;
+        private int consumed;
+        private boolean stopped;
+
+        PdfRanges(int pages, int participants) {
+            this.pages = pages;
+            this.count = (pages + PDF_PAGES_PER_TASK - 1) / PDF_PAGES_PER_TASK;
+            this.lookAhead = 2 * participants;
+            this.results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new CompletableFuture<>());
+            }
+        }
+
+        /** Next range for a worker, waiting while it is too far ahead of the consumer; -1 when done */
+        synchronized int take() throws InterruptedException {
+            while (!stopped && next < count && next >= consumed + lookAhead) {
+                wait();
+            }
+            return stopped || next >= count ? -1 : next++;
+        }
+
+        /** Take the given range for the consumer if no worker has taken it yet */
+        synchronized boolean claim(int range) {
+            if (next != range) {
+                return false;
+            }
+            next++;
+            return true;
+        }
+
+        synchronized void consumed(int range) {
+            consumed = range + 1;
+            notifyAll();
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            notifyAll();
+        }
+
+        synchronized boolean isStopped() {
+            return stopped;
+        }
+    }
+
+    /**
+     * Worker for a parallel extraction. A large file is only parsed again when a
+     * large-document permit is free without waiting; otherwise the consumer extracts
+     * the ranges itself from the copy it already holds.
+     */
+    private static void extractPdfRangesWithPermit(Path file, PdfRanges ranges, boolean large) {
+        if (!large) {
+            extractPdfRanges(file, ranges);
+            return;
+        }
+        try {
+            // Timed tryAcquire respects fairness, so documents waiting for a permit go first
+            if (!largeDocuments.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            extractPdfRanges(file, ranges);
+        } finally {
+            largeDocuments.release();
+        }
+    }
+
+    private static void extractPdfRanges(Path file, PdfRanges ranges) {
+        // PDDocument is not thread-safe, so every worker parses its own instance once
+        try (PDDocument document = loadPdf(file)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            int range;
+            while ((range = ranges.take()) >= 0) {
+                try {
+                    ranges.results.get(range).complete(extractPdfRange(stripper, document, ranges, range));
+                } catch (IOException | RuntimeException e) {
+                    ranges.results.get(range).completeExceptionally(e);
+                    return;
+                } catch (Error e) {
+                    // Never leave the consumer waiting for a range that will not arrive
+                    ranges.results.get(range).completeExceptionally(e);
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The consumer extracts the ranges this worker would have taken
+            LogUtil.warn("DocumentExtractor", "PDF worker could not load " + file.getFileName() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private static List<String> extractPdfRange(PDFTextStripper stripper, PDDocument document, PdfRanges ranges,
+            int range) throws IOException {
+        int firstPage = range * PDF_PAGES_PER_TASK + 1;
+        int lastPage = Math.min(ranges.pages, firstPage + PDF_PAGES_PER_TASK - 1);
+        List<String> texts = new ArrayList<>(lastPage - firstPage + 1);
+        for (int page = firstPage; page <= lastPage && !ranges.isStopped(); page++) {
+            texts.add(pageText(stripper, document, page));
+            pdfPages.incrementAndGet();
+        }
+        return texts;
+    }
+
+    private static List<String> awaitPdfRange(CompletableFuture<List<String>> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF extraction interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not extract PDF pages: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Load a PDF in main memory, or through a scratch file when it is above LARGE_FILE_BYTES
+     */
+    static PDDocument loadPdf(Path file) throws IOException {
+        if (Files.size(file) < LARGE_FILE_BYTES) {
+            return PDDocument.load(file.toFile());
+        }
+        pdfScratchLoads.incrementAndGet();
+        MemoryUsageSetting setting = "tempfile".equalsIgnoreCase(SCRATCH_MODE)
+                ? MemoryUsageSetting.setupTempFileOnly()
+                : MemoryUsageSetting.setupMixed(SCRATCH_MEMORY_BYTES);
+        if (SCRATCH_DIR != null) {
+            setting.setTempDir(new File(SCRATCH_DIR));
+        }
+        return PDDocument.load(file.toFile(), setting);
+    }
+
+    private static String pageText(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    private static String extractDocx(Path file, int maxChars) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+                XWPFDocument document = new XWPFDocument(in)) {
+            StringBuilder content = new StringBuilder();
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                content.append(paragraph.getText()).append("\n");
+                if (content.length() >= maxChars) {
+                    content.setLength(maxChars);
+                    LogUtil.info("DocumentExtractor", "DOCX text truncated at " + maxChars + " characters");
+                    break;
+                }
+            }
+            return content.toString();
+        }
+    }
+
+    private static String extractTxt(Path file, int maxChars) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            LimitedWriter writer = new LimitedWriter(maxChars);
+            char[] buffer = new char[8192];
+            int read;
+            try {
+                while ((read = reader.read(buffer)) != -1) {
+                    writer.write(buffer, 0, read);
+                }
+            } catch (LimitedWriter.LimitReachedException e) {
+                LogUtil.info("DocumentExtractor", "Text file truncated at " + maxChars + " characters");
+            }
+            return writer.toString();
+        }
+    }
+
+    static String getFileExtension(String filename) {
+        int lastDotIndex = filename != null ? filename.lastIndexOf('.') : -1;
+        if (lastDotIndex > 0 && lastDotIndex < filename.length() - 1) {
+            return filename.substring(lastDotIndex + 1);
+        }
+        return "";
+    }
+
+    private static synchronized ThreadPoolExecutor getExtractionPool() {
+        if (extractionPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            extractionPool = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, QUEUE_SIZE)), runnable -> {
+                        Thread thread = new Thread(runnable, "gemini-extract-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return extractionPool;
+    }
+
+    private static synchronized ForkJoinPool getPdfPool() {
+        if (pdfPool == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            pdfPool = new ForkJoinPool(Math.max(1, PDF_PARALLELISM), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("gemini-extract-pdf-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return pdfPool;
+    }
+
+    /**
+     * Pool state and per-format counters for monitoring
+     */
+    public static synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", THREADS);
+        stats.put("active", extractionPool != null ? extractionPool.getActiveCount() : 0);
+        stats.put("queued", extractionPool != null ? extractionPool.getQueue().size() : 0);
+        Map<String, Object> formats = new HashMap<>();
+        for (Map.Entry<Format, FormatStats> entry : formatStats.entrySet()) {
+            if (entry.getValue().extractions.get() > 0 || entry.getValue().failures.get() > 0
+                    || entry.getValue().timeouts.get() > 0 || entry.getValue().rejected.get() > 0) {
+                formats.put(entry.getKey().name().toLowerCase(), entry.getValue().toMap());
+            }
+        }
+        stats.put("formats", formats);
+        Map<String, Object> pdf = new HashMap<>();
+        pdf.put("parallelism", PDF_PARALLELISM);
+        pdf.put("pages", pdfPages.get());
+        pdf.put("parallelRuns", pdfParallelRuns.get());
+        pdf.put("earlyStops", pdfEarlyStops.get());
+        pdf.put("scratchLoads", pdfScratchLoads.get());
+        pdf.put("active", pdfPool != null ? pdfPool.getActiveThreadCount() : 0);
+        stats.put("pdf", pdf);
+        stats.put("maxChars", maxChars());
+        Map<String, Object> large = new HashMap<>();
+        large.put("thresholdBytes", LARGE_FILE_BYTES);
+        large.put("concurrency", LARGE_CONCURRENCY);
+        large.put("active", LARGE_CONCURRENCY - largeDocuments.availablePermits());
+        large.put("waiting", largeDocuments.getQueueLength());
+        large.put("scratchMode", SCRATCH_MODE);
+        stats.put("largeDocuments", large);
+        return stats;
+    }
+
+    /**
+     * Stop the extraction pools
+     */
+    public static synchronized void shutdown() {
+        if (extractionPool != null) {
+            extractionPool.shutdownNow();
+            extractionPool = null;
+        }
+        if (pdfPool != null) {
+            pdfPool.shutdownNow();
+            pdfPool = null;
+        }
+    }
+
+    private static class FormatStats {
+        final AtomicLong extractions = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        final AtomicLong totalChars = new AtomicLong();
+        final AtomicLong totalBytes = new AtomicLong();
+
+        void record(long millis, long chars, long bytes) {
+            extractions.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            totalChars.addAndGet(chars);
+            totalBytes.addAndGet(bytes);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            long count = extractions.get();
+            map.put("extractions", count);
+            map.put("failures", failures.get());
+            map.put("timeouts", timeouts.get());
+            map.put("rejected", rejected.get());
+            map.put("avgMillis", count > 0 ? totalMillis.get() / count : 0);
+            map.put("totalChars", totalChars.get());
+            map.put("totalBytes", totalBytes.get());
+            return map;
+        }
+    }
+
+    /**
+     * Writer that keeps at most a fixed number of characters, then stops the producer
+     */
+    static class LimitedWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private final int maxChars;
+
+        static class LimitReachedException extends IOException {
+            LimitReachedException() {
+                super("Text limit reached");
+            }
+        }
+
+        LimitedWriter(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            int room = maxChars - buffer.length();
+            buffer.append(chars, offset, Math.min(room, length));
+            if (length > room) {
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Thrown for files whose content is not a supported document format
+     */
+    public static class UnsupportedFormatException extends IOException {
+        private final String extension;
+
+        UnsupportedFormatException(String extension) {
+            super("Unsupported file type: " + extension + ". Please use PDF, DOCX, or TXT files.");
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.joget.gemini;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Streaming DOCX text extraction that reads the package XML with StAX instead of building an XWPFDocument
+ * ✅ STREAMING: Parts are parsed straight from the zip; memory is bounded by the output limit
+ * ✅ COMPLETE: Paragraphs, lists, tables, headers, footers, footnotes and endnotes
+ * ✅ ORDER: Body text in document order, table cells separated by "|", one row per line
+ * ✅ SAFE: DTDs and external entities are disabled
+ */
+public class DocxTextExtractor {
+
+    private static final XMLInputFactory XML_FACTORY = createFactory();
+
+    /**
+     * Extract up to maxChars characters: headers, then the body, footnotes, endnotes and footers
+     */
+    public static String extract(Path file, int maxChars) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            DocumentExtractor.LimitedWriter out = new DocumentExtractor.LimitedWriter(maxChars);
+            try {
+                for (String part : partsInOrder(zip)) {
+                    readPart(zip, zip.getEntry(part), out);
+                }
+            } catch (DocumentExtractor.LimitedWriter.LimitReachedException e) {
+                LogUtil.info("DocxTextExtractor", "DOCX text truncated at " + maxChars + " characters");
+            }
+            return out.toString();
+        }
+    }
+
+    private static List<String> partsInOrder(ZipFile zip) {
+        List<String> headers = new ArrayList<>();
+        List<String> footers = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.matches("word/header\\d*\\.xml")) {
+                headers.add(name);
+            } else if (name.matches("word/footer\\d*\\.xml")) {
+                footers.add(name);
+            }
+        }
+        // header2.xml before header10.xml
+        Comparator<String> byNumber = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+        headers.sort(byNumber);
+        footers.sort(byNumber);
+
+        List<String> parts = new ArrayList<>(headers);
+        for (String name : new String[] { "word/document.xml", "word/footnotes.xml", "word/endnotes.xml" }) {
+            if (zip.getEntry(name) != null) {
+                parts.add(name);
+            }
+        }
+        parts.addAll(footers);
+        return parts;
+    }
+
+    /**
+     * Write the visible text of one WordprocessingML part
+     */
+    private static void readPart(ZipFile zip, ZipEntry entry, Writer out) throws IOException {
+        XMLStreamReader xml = null;
+        try (InputStream in = new BufferedInputStream(zip.getInputStream(entry))) {
+            xml = XML_FACTORY.createXMLStreamReader(in);
+            boolean inText = false;
+            int paragraphPropertiesDepth = 0; // w:pPrChange nests the previous w:pPr inside the current one
+            boolean listItem = false;
+            Deque<Boolean> firstCell = new ArrayDeque<>(); // one entry per open table
+            int skipDepth = 0; // > 0 inside elements whose content is not shown
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (skipDepth > 0 || "Fallback".equals(name) || "tabs".equals(name)) {
+                        // mc:Fallback repeats the mc:Choice content; w:tabs holds tab stops, not tabs
+                        skipDepth++;
+                        continue;
+                    }
+                    switch (name) {
+                        case "p":
+                            listItem = false;
+                            break;
+                        case "pPr":
+                            paragraphPropertiesDepth++;
+                            break;
+                        case "numPr":
+                            // Only the current properties count, not those before a tracked change
+                            listItem = listItem || paragraphPropertiesDepth == 1;
+                            break;
+                        case "t":
+                            inText = true;
+                            break;
+                        case "tab":
+                            out.write('\t');
+                            break;
+                        case "br":
+                        case "cr":
+                            out.write('\n');
+                            break;
+                        case "tbl":
+                            firstCell.push(Boolean.FALSE);
+                            break;
+                        case "tr":
+                            if (!firstCell.isEmpty()) {
+                                firstCell.pop();
+                                firstCell.push(Boolean.TRUE);
+                            }
+                            break;
+                        case "tc":
+                            if (!firstCell.isEmpty()) {
+                                if (!firstCell.pop()) {
+                                    out.write("| "); // the cell's last paragraph already ended with a space
+                                }
+                                firstCell.push(Boolean.FALSE);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                        continue;
+                    }
+                    switch (xml.getLocalName()) {
+                        case "t":
+                            inText = false;
+                            break;
+                        case "pPr":
+                            paragraphPropertiesDepth--;
+                            if (paragraphPropertiesDepth == 0 && listItem) {
+                                out.write("- ");
+                            }
+                            break;
+                        case "p":
+                            // Paragraphs inside a table cell stay on the row's line
+                            out.write(!firstCell.isEmpty() ? ' ' : '\n');
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new InterruptedIOException("DOCX extraction interrupted");
+                            }
+                            break;
+                        case "tr":
+                            // A nested table's rows stay on the outer row's line
+                            out.write(firstCell.size() > 1 ? ' ' : '\n');
+                            break;
+                        case "tbl":
+                            firstCell.poll();
+                            out.write(!firstCell.isEmpty() ? ' ' : '\n');
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (inText && skipDepth == 0 && (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+                    out.write(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid DOCX part " + entry.getName() + ": " + e.getMessage(), e);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                    // stream is closed with the zip entry
+                }
+            }
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,319 @@
+package org.joget.gemini;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Cache of text extracted from uploaded documents, so each file version is parsed once
+ * ✅ CONTENT-ADDRESSED: Keyed by SHA-256 of the file bytes, size and extractor type (incl. its settings)
+ * ✅ CHEAP CHECKS: A file is re-hashed only when its size or modification time changes
+ * ✅ TWO TIERS: In-memory LRU bounded by characters, backed by gzip files on disk
+ * ✅ SINGLE-FLIGHT: Concurrent requests for the same document share one extraction
+ */
+public class ExtractedTextCache {
+
+    // Cache settings (override with -Dgemini.extractCache.* system properties)
+    private static final boolean ENABLED = !"false".equals(System.getProperty("gemini.extractCache.enabled"));
+    private static final long MEMORY_MAX_CHARS = Long.getLong("gemini.extractCache.memoryMaxChars", 20000000L);
+    private static final boolean DISK_ENABLED = !"false".equals(System.getProperty("gemini.extractCache.disk"));
+    private static final long DISK_MAX_BYTES = Long.getLong("gemini.extractCache.diskMaxMb", 512L) * 1024 * 1024;
+    private static final Path CACHE_DIR = Paths.get(System.getProperty("gemini.extractCache.dir",
+            System.getProperty("java.io.tmpdir") + File.separator + "gemini-extract-cache"));
+    // Paths whose last hash is remembered; a forgotten path is simply hashed again
+    private static final int FILE_VERSIONS_MAX = Integer.getInteger("gemini.extractCache.fileVersions", 10000);
+    private static final long FILE_VERSION_TTL_MS = 24 * 60 * 60 * 1000L;
+    // Bump when extraction output changes so old cached text is not reused
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Extracts text from a file on a cache miss
+     */
+    public interface Extractor {
+        String extract(Path file) throws IOException;
+    }
+
+    private static class FileVersion {
+        final long size;
+        final long modifiedMillis;
+        final String hash;
+
+        FileVersion(long size, long modifiedMillis, String hash) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.hash = hash;
+        }
+    }
+
+    // Last known hash per path, reused while size and modification time are unchanged
+    private static final TtlCache<Path, FileVersion> fileVersions = new TtlCache<>(FILE_VERSIONS_MAX,
+            FILE_VERSION_TTL_MS);
+    private static final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private static final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private static long memoryChars;
+    private static long diskBytes = -1; // computed on first disk write
+
+    private static final AtomicLong memoryHits = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong hashes = new AtomicLong();
+
+    /**
+     * Return the text of the file, extracting it only if this file version has not been seen
+     * before. type identifies the extractor and every setting that changes its output
+     * (e.g. "docx-stax-2000000"); it is part of the cache key and must be file-name safe.
+     */
+    public static String get(Path file, String type, Extractor extractor) throws IOException {
+        if (!ENABLED) {
+            return extractor.extract(file);
+        }
+
+        // Single-flight per file and type, so concurrent callers also share the hashing
+        String flightKey = file.toAbsolutePath().normalize() + "|" + type;
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(flightKey, own);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            String key = cacheKey(file, type);
+            String text = getFromMemory(key);
+            if (text != null) {
+                memoryHits.incrementAndGet();
+                own.complete(text);
+                return text;
+            }
+
+            text = readFromDisk(key);
+            if (text != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                text = extractor.extract(file);
+                writeToDisk(key, text);
+            }
+            putInMemory(key, text);
+            own.complete(text);
+            return text;
+        } catch (IOException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey);
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for text extraction", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String cacheKey(Path file, String type) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+
+        FileVersion known = fileVersions.get(path, () -> new FileVersion(size, modified, sha256(path)));
+        if (known.size != size || known.modifiedMillis != modified) {
+            known = new FileVersion(size, modified, sha256(path));
+            fileVersions.put(path, known);
+        }
+        return known.hash + "-" + size + "-" + type + "-v" + FORMAT_VERSION;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        hashes.incrementAndGet();
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static synchronized String getFromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private static synchronized void putInMemory(String key, String text) {
+        if (text.length() > MEMORY_MAX_CHARS) {
+            return;
+        }
+        String previous = memory.put(key, text);
+        memoryChars += text.length() - (previous != null ? previous.length() : 0);
+
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while (memoryChars > MEMORY_MAX_CHARS && eldest.hasNext()) {
+            memoryChars -= eldest.next().getValue().length();
+            eldest.remove();
+        }
+    }
+
+    private static String readFromDisk(String key) {
+        if (!DISK_ENABLED) {
+            return null;
+        }
+        Path blob = CACHE_DIR.resolve(key + ".txt.gz");
+        if (!Files.exists(blob)) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(blob)),
+                StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            // Recently used blobs survive pruning
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            return text.toString();
+        } catch (IOException e) {
+            LogUtil.warn("ExtractedTextCache", "Discarding unreadable cache file " + blob + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(blob);
+            } catch (IOException ignored) {
+                // best effort
+            }
+            return null;
+        }
+    }
+
+    private static void writeToDisk(String key, String text) {
+        if (!DISK_ENABLED) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(CACHE_DIR);
+            temp = Files.createTempFile(CACHE_DIR, key, ".tmp");
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)),
+                    StandardCharsets.UTF_8)) {
+                writer.write(text);
+            }
+            long written = Files.size(temp);
+            Files.move(temp, CACHE_DIR.resolve(key + ".txt.gz"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            addDiskBytes(written);
+        } catch (IOException e) {
+            LogUtil.warn("ExtractedTextCache", "Could not write extracted text to disk cache: " + e.getMessage());
+        } finally {
+            // Left behind only when the write or move failed
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    private static synchronized void addDiskBytes(long written) throws IOException {
+        if (diskBytes < 0) {
+            diskBytes = 0;
+            for (Path blob : listBlobs()) {
+                diskBytes += Files.size(blob);
+            }
+        } else {
+            diskBytes += written;
+        }
+        if (diskBytes > DISK_MAX_BYTES) {
+            pruneDisk();
+        }
+    }
+
+    /**
+     * Delete least recently used blobs until the disk tier is back under 90% of its limit
+     */
+    private static void pruneDisk() throws IOException {
+        List<Path> blobs = listBlobs();
+        blobs.sort(Comparator.comparingLong(blob -> blob.toFile().lastModified()));
+        int removed = 0;
+        for (Path blob : blobs) {
+            if (diskBytes <= DISK_MAX_BYTES * 9 / 10) {
+                break;
+            }
+            long size = Files.size(blob);
+            if (Files.deleteIfExists(blob)) {
+                diskBytes -= size;
+                removed++;
+            }
+        }
+        LogUtil.info("ExtractedTextCache", "Pruned " + removed + " cached documents from " + CACHE_DIR);
+    }
+
+    private static List<Path> listBlobs() throws IOException {
+        List<Path> blobs = new ArrayList<>();
+        if (Files.isDirectory(CACHE_DIR)) {
+            try (Stream<Path> files = Files.list(CACHE_DIR)) {
+                files.filter(path -> path.toString().endsWith(".txt.gz")).forEach(blobs::add);
+            }
+        }
+        return blobs;
+    }
+
+    /**
+     * Cache counters for monitoring
+     */
+    public static synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("memoryEntries", memory.size());
+        stats.put("memoryChars", memoryChars);
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskEnabled", DISK_ENABLED);
+        stats.put("diskDirectory", CACHE_DIR.toString());
+        stats.put("diskBytes", Math.max(0, diskBytes));
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("fileHashes", hashes.get());
+        stats.put("fileVersions", fileVersions.getStats());
+        return stats;
+    }
+
+    /**
+     * Drop the in-memory tier; the disk tier is kept for the next start
+     */
+    public static synchronized void shutdown() {
+        memory.clear();
+        memoryChars = 0;
+        fileVersions.clear();
+    }
+}
@@ -0,0 +1,202 @@
+package org.joget.gemini;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.LongSupplier;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Circuit breaker shared by all Gemini API calls
+ * ✅ CLOSED: Calls pass through; outcomes are tracked over a sliding window
+ * ✅ OPEN: Trips on a high failure or slow-call rate and fails fast for a cool-down period
+ * ✅ HALF-OPEN: Lets a few probe calls through and closes again if they succeed
+ */
+public class GeminiCircuitBreaker {
+
+    // Thresholds (override with -Dgemini.breaker.* system properties)
+    private static final int WINDOW_SIZE = Integer.getInteger("gemini.breaker.windowSize", 20);
+    private static final int MIN_CALLS = Integer.getInteger("gemini.breaker.minCalls", 10);
+    private static final int FAILURE_RATE_THRESHOLD = Integer.getInteger("gemini.breaker.failureRatePercent", 50);
+    private static final long SLOW_CALL_MS = Long.getLong("gemini.breaker.slowCallMs", 30000L);
+    private static final int SLOW_CALL_RATE_THRESHOLD = Integer.getInteger("gemini.breaker.slowCallRatePercent", 80);
+    private static final long OPEN_DURATION_MS = Long.getLong("gemini.breaker.openMs", 30000L);
+    private static final int HALF_OPEN_CALLS = Integer.getInteger("gemini.breaker.halfOpenCalls", 3);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final GeminiCircuitBreaker INSTANCE = new GeminiCircuitBreaker(System::currentTimeMillis);
+
+    private final LongSupplier clock;
+
+    // Ring buffer of recent call outcomes
+    private final boolean[] failures = new boolean[Math.max(1, WINDOW_SIZE)];
+    private final boolean[] slowCalls = new boolean[Math.max(1, WINDOW_SIZE)];
+    private int recorded;
+    private int nextSlot;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+    private long rejectedCount;
+    private String lastTripReason;
+
+    GeminiCircuitBreaker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public static GeminiCircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Check whether a call may proceed; throws OpenException to fail fast
+     */
+    public synchronized void acquirePermission() throws OpenException {
+        if (state == State.OPEN) {
+            long remaining = openedAt + OPEN_DURATION_MS - clock.getAsLong();
+            if (remaining > 0) {
+                rejectedCount++;
+                throw new OpenException(remaining);
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSuccesses >= HALF_OPEN_CALLS) {
+                rejectedCount++;
+                throw new OpenException(0);
+            }
+            halfOpenInFlight++;
+        }
+    }
+
+    /**
+     * Give back a permission that was never used for a call
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     */
+    public synchronized void record(boolean failed, long durationMs) {
+        boolean slow = durationMs >= SLOW_CALL_MS;
+
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (failed || slow) {
+                trip("probe call " + (failed ? "failed" : "was slow (" + durationMs + "ms)"));
+            } else if (++halfOpenSuccesses >= HALF_OPEN_CALLS) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        if (state == State.OPEN) {
+            return; // late result from a call started before the breaker opened
+        }
+
+        failures[nextSlot] = failed;
+        slowCalls[nextSlot] = slow;
+        nextSlot = (nextSlot + 1) % failures.length;
+        recorded = Math.min(recorded + 1, failures.length);
+
+        if (recorded >= MIN_CALLS) {
+            int failureRate = percentOf(failures);
+            int slowRate = percentOf(slowCalls);
+            if (failureRate >= FAILURE_RATE_THRESHOLD) {
+                trip("failure rate " + failureRate + "%");
+            } else if (slowRate >= SLOW_CALL_RATE_THRESHOLD) {
+                trip("slow call rate " + slowRate + "%");
+            }
+        }
+    }
+
+    /**
+     * Whether a failure should count against the breaker: network errors and
+     * server-side HTTP errors do, client errors such as a bad request do not.
+     * A call cut off at the caller's deadline counts only through its duration.
+     */
+    public static boolean isFailure(Exception e) {
+        if (e instanceof OpenException || e instanceof GeminiService.DeadlineExceededException) {
+            return false;
+        }
+        if (e instanceof GeminiService.ApiException) {
+            int status = ((GeminiService.ApiException) e).getStatusCode();
+            return status >= 500 || status == 408;
+        }
+        return true;
+    }
+
+    private int percentOf(boolean[] outcomes) {
+        int count = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (outcomes[i]) {
+                count++;
+            }
+        }
+        return count * 100 / recorded;
+    }
+
+    private void trip(String reason) {
+        lastTripReason = reason;
+        transitionTo(State.OPEN);
+        LogUtil.warn("GeminiCircuitBreaker", "⚠️ Circuit opened: " + reason + "; failing fast for "
+                + OPEN_DURATION_MS + "ms");
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+        if (newState == State.OPEN) {
+            openedAt = clock.getAsLong();
+        } else if (newState == State.CLOSED) {
+            recorded = 0;
+            nextSlot = 0;
+            LogUtil.info("GeminiCircuitBreaker", "✅ Circuit closed");
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() >= openedAt + OPEN_DURATION_MS) {
+            return State.HALF_OPEN; // next call will probe
+        }
+        return state;
+    }
+
+    /**
+     * Breaker state for monitoring
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", getState().name());
+        stats.put("recordedCalls", recorded);
+        stats.put("failureRatePercent", recorded > 0 ? percentOf(failures) : 0);
+        stats.put("slowCallRatePercent", recorded > 0 ? percentOf(slowCalls) : 0);
+        stats.put("rejectedCalls", rejectedCount);
+        if (state == State.OPEN) {
+            stats.put("retryInMs", Math.max(0, openedAt + OPEN_DURATION_MS - clock.getAsLong()));
+        }
+        if (lastTripReason != null) {
+            stats.put("lastTripReason", lastTripReason);
+        }
+        return stats;
+    }
+
+    /**
+     * Thrown instead of calling Gemini while the circuit is open
+     */
+    public static class OpenException extends IOException {
+        public static final String ERROR_CODE = "CIRCUIT_OPEN";
+
+        OpenException(long retryInMs) {
+            super("Gemini API temporarily unavailable (circuit breaker open)"
+                    + (retryInMs > 0 ? ", retry in " + (retryInMs / 1000 + 1) + "s" : ""));
+        }
+    }
+}
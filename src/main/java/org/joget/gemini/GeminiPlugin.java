@@ -5,12 +5,25 @@ import java.io.OutputStream;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.joget.plugin.base.DefaultApplicationPlugin;
@@ -19,6 +32,8 @@ import org.joget.commons.util.LogUtil;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
@@ -29,6 +44,29 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
     private static HttpServer embeddedServer = null;
     private static final int EMBEDDED_PORT = 8081;
 
+    // Worker pools (override with -Dgemini.server.* system properties).
+    // Interactive endpoints run on the server executor; long-running grading and
+    // evaluation endpoints are handed off to a separate pool so they cannot starve /chat.
+    private static final int SERVER_THREADS = Integer.getInteger("gemini.server.threads", 16);
+    private static final int SERVER_MAX_THREADS = Integer.getInteger("gemini.server.maxThreads", 64);
+    private static final int SERVER_QUEUE_SIZE = Integer.getInteger("gemini.server.queueSize", 200);
+    private static final int BATCH_THREADS = Integer.getInteger("gemini.server.batchThreads", 4);
+    private static final int BATCH_QUEUE_SIZE = Integer.getInteger("gemini.server.batchQueueSize", 20);
+    // Long-lived responses (SSE /chat, /jobs/{id}/stream) hold a thread until they end
+    private static final int STREAM_THREADS = Integer.getInteger("gemini.server.streamThreads", 16);
+    private static final boolean USE_VIRTUAL_THREADS = Boolean.getBoolean("gemini.server.virtualThreads");
+    // Set while rejectWhenBusy runs a request on the dispatcher thread so OverloadFilter answers it
+    private static final ThreadLocal<Boolean> OVERLOADED = new ThreadLocal<>();
+
+    // Time budget for a /chat request; grading and evaluation budgets live in their services
+    private static final long CHAT_DEADLINE_MS = Long.getLong("gemini.chat.deadlineMs", 30000L);
+    // Rows per page when /db/* listings are paged without an explicit pageSize
+    private static final int DEFAULT_PAGE_SIZE = Integer.getInteger("gemini.db.pageSize", 50);
+
+    private static ExecutorService serverExecutor = null;
+    private static ExecutorService batchExecutor = null;
+    private static ExecutorService streamExecutor = null;
+
     @Override
     public String getName() {
         return "GeminiPlugin";
@@ -81,49 +119,57 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
             // ========================================
             // CORE AI CHAT ENDPOINTS
             // ========================================
-            embeddedServer.createContext("/chat", new ChatHandler()); // Enhanced with database integration
-            embeddedServer.createContext("/health", new HealthHandler());
-            embeddedServer.createContext("/test", new TestHandler());
+            addContext("/chat", new ChatHandler()); // Enhanced with database integration
+            addContext("/health", new HealthHandler());
+            addContext("/test", new TestHandler());
 
             // ========================================
             // ORIGINAL DATABASE ENDPOINTS
             // ========================================
-            embeddedServer.createContext("/db/test", new DatabaseTestHandler());
-            embeddedServer.createContext("/db/apps", new DatabaseAppsHandler());
-            embeddedServer.createContext("/db/forms", new DatabaseFormsHandler());
-            embeddedServer.createContext("/db/users", new DatabaseUsersHandler());
-            embeddedServer.createContext("/db/chat-history", new ChatHistoryHandler());
-            embeddedServer.createContext("/db/info", new DatabaseInfoHandler());
+            addContext("/db/test", new DatabaseTestHandler());
+            addContext("/db/apps", new DatabaseAppsHandler());
+            addContext("/db/forms", new DatabaseFormsHandler());
+            addContext("/db/users", new DatabaseUsersHandler());
+            addContext("/db/chat-history", new ChatHistoryHandler());
+            addContext("/db/info", new DatabaseInfoHandler());
 
             // ========================================
             // NEW ENHANCED ENDPOINTS FOR REAL DATA
             // ========================================
-            embeddedServer.createContext("/db/materials", new DatabaseMaterialsHandler()); // Course materials from
-                                                                                           // app_fd_materials
-            embeddedServer.createContext("/db/assignments", new DatabaseAssignmentsHandler()); // Assignments from
-                                                                                               // app_fd_assignments
-            embeddedServer.createContext("/db/statistics", new CourseStatisticsHandler()); // Combined statistics
-            embeddedServer.createContext("/analyze", new ContentAnalysisHandler()); // AI content analysis
+            addContext("/db/materials", new DatabaseMaterialsHandler()); // Course materials from app_fd_materials
+            addContext("/db/assignments", new DatabaseAssignmentsHandler()); // Assignments from app_fd_assignments
+            addContext("/db/statistics", new CourseStatisticsHandler()); // Combined statistics
+            addContext("/analyze", new ContentAnalysisHandler()); // AI content analysis
 
             // ========================================
             // DEBUG & DOCUMENTATION
             // ========================================
-            embeddedServer.createContext("/debug", new DebugHandler());
-            embeddedServer.createContext("/", new ApiDocsHandler()); // Enhanced with real examples
-
-            // Start server in background
-            embeddedServer.setExecutor(null);
+            addContext("/debug", new DebugHandler());
+            addContext("/", new ApiDocsHandler()); // Enhanced with real examples
+
+            // Start server in background on bounded worker pools
+            serverExecutor = createServerExecutor();
+            batchExecutor = createBoundedExecutor("gemini-batch", BATCH_THREADS, BATCH_QUEUE_SIZE,
+                    new ThreadPoolExecutor.AbortPolicy());
+            streamExecutor = createBoundedExecutor("gemini-stream", STREAM_THREADS, 0,
+                    new ThreadPoolExecutor.AbortPolicy());
+            embeddedServer.setExecutor(rejectWhenBusy(serverExecutor));
             embeddedServer.start();
 
             // ========================================
             // Auto Grading Service
             // ========================================
-            embeddedServer.createContext("/grade", new AutoGradingHandler()); // AI auto-grading endpoint
-            embeddedServer.createContext("/grade/batch", new BatchGradingHandler()); // Batch grading endpoint
+            addContext("/grade", new PooledHandler(new AutoGradingHandler(), batchExecutor));
+            addContext("/grade/batch", new PooledHandler(new BatchGradingHandler(), batchExecutor));
 
             // MATERIAL EVALUATION ENDPOINTS
-            embeddedServer.createContext("/evaluate", new MaterialEvaluationHandler()); // Single material evaluation
-            embeddedServer.createContext("/evaluate/batch", new BatchMaterialEvaluationHandler()); // Batch evaluation
+            addContext("/evaluate",
+                    new PooledHandler(new MaterialEvaluationHandler(), batchExecutor));
+            addContext("/evaluate/batch",
+                    new PooledHandler(new BatchMaterialEvaluationHandler(), batchExecutor));
+
+            // BACKGROUND JOB ENDPOINTS (submit with async=true on the batch endpoints)
+            addContext("/jobs", new JobsHandler());
 
             // ========================================
             // SUCCESS LOGGING WITH ENHANCED INFO
@@ -245,10 +291,228 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
             LogUtil.info("GeminiPlugin", "Stopping embedded HTTP server...");
             embeddedServer.stop(2); // 2 second grace period
             embeddedServer = null;
+            shutdownExecutor(streamExecutor);
+            shutdownExecutor(batchExecutor);
+            shutdownExecutor(serverExecutor);
+            streamExecutor = null;
+            batchExecutor = null;
+            serverExecutor = null;
             LogUtil.info("GeminiPlugin", "✅ Embedded HTTP server stopped");
         }
     }
 
+    /**
+     * Create the executor for interactive endpoints: virtual threads when requested
+     * and available (Java 21+), otherwise an elastic pool with a bounded queue.
+     */
+    private static ExecutorService createServerExecutor() {
+        if (USE_VIRTUAL_THREADS) {
+            try {
+                ExecutorService virtualExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                LogUtil.info("GeminiPlugin", "Using virtual threads for embedded server");
+                return virtualExecutor;
+            } catch (Exception e) {
+                LogUtil.warn("GeminiPlugin", "Virtual threads not available on this runtime, using thread pool");
+            }
+        }
+
+        // SERVER_THREADS serve requests; once SERVER_QUEUE_SIZE are waiting the pool grows
+        // to SERVER_MAX_THREADS, and beyond that requests are rejected (see rejectWhenBusy)
+        return createBoundedExecutor("gemini-http", SERVER_THREADS, Math.max(SERVER_THREADS, SERVER_MAX_THREADS),
+                SERVER_QUEUE_SIZE, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Executor handed to the HttpServer. A request the pool rejects is answered with 503
+     * by OverloadFilter on the dispatcher thread, which only reads the request line and
+     * headers, instead of running the handler there and stalling every other connection.
+     */
+    private static Executor rejectWhenBusy(ExecutorService pool) {
+        return task -> {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                OVERLOADED.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    OVERLOADED.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a context whose requests get 503 instead of their handler while the
+     * interactive pool is saturated
+     */
+    private static HttpContext addContext(String path, HttpHandler handler) {
+        HttpContext context = embeddedServer.createContext(path, handler);
+        context.getFilters().add(new OverloadFilter());
+        return context;
+    }
+
+    /**
+     * Replies 503 to requests that rejectWhenBusy runs on the dispatcher thread
+     */
+    static class OverloadFilter extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (OVERLOADED.get() == null) {
+                chain.doFilter(exchange);
+                return;
+            }
+            LogUtil.warn("GeminiPlugin", "Server pool saturated, rejecting " + exchange.getRequestURI());
+            sendGradingErrorResponse(exchange, "Server busy, please retry later", "SERVER_BUSY", 503);
+        }
+
+        @Override
+        public String description() {
+            return "Rejects requests with 503 while the server pool is saturated";
+        }
+    }
+
+    /**
+     * Create a thread pool with a bounded queue and named daemon threads. Core and
+     * maximum size are equal so a new thread is started for each request until the
+     * pool is full (a ThreadPoolExecutor only grows past its core size once the queue
+     * is full); idle threads exit after 60 seconds. A queue size of 0 hands tasks
+     * straight to a thread and rejects them when all threads are busy.
+     */
+    private static ExecutorService createBoundedExecutor(String name, int threads, int queueSize,
+            RejectedExecutionHandler rejectionPolicy) {
+        return createBoundedExecutor(name, threads, threads, queueSize, rejectionPolicy);
+    }
+
+    /**
+     * Create a thread pool that runs coreThreads, queues up to queueSize tasks and only
+     * then starts more threads, up to maxThreads
+     */
+    private static ExecutorService createBoundedExecutor(String name, int coreThreads, int maxThreads,
+            int queueSize, RejectedExecutionHandler rejectionPolicy) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        LogUtil.info("GeminiPlugin", "Creating " + name + " pool (threads=" + coreThreads
+                + (maxThreads > coreThreads ? "-" + maxThreads : "") + ", queue=" + queueSize + ")");
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(coreThreads, maxThreads, 60L, TimeUnit.SECONDS, queue,
+                threadFactory, rejectionPolicy);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Shut down an executor, waiting briefly for in-flight requests
+     */
+    private static void shutdownExecutor(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get thread pool statistics for monitoring
+     */
+    static Map<String, Object> getExecutorStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("server", describeExecutor(serverExecutor));
+        stats.put("batch", describeExecutor(batchExecutor));
+        stats.put("stream", describeExecutor(streamExecutor));
+        return stats;
+    }
+
+    private static Map<String, Object> describeExecutor(ExecutorService executor) {
+        Map<String, Object> info = new HashMap<>();
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            info.put("type", "pool");
+            info.put("active", pool.getActiveCount());
+            info.put("poolSize", pool.getPoolSize());
+            info.put("maxPoolSize", pool.getMaximumPoolSize());
+            info.put("queued", pool.getQueue().size());
+            info.put("completed", pool.getCompletedTaskCount());
+        } else {
+            info.put("type", executor != null ? "virtual" : "none");
+        }
+        return info;
+    }
+
+    /**
+     * Runs a handler on its own executor so slow endpoints are isolated from the
+     * server's interactive pool. Replies 503 when that executor is saturated.
+     */
+    static class PooledHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        private final ExecutorService executor;
+
+        PooledHandler(HttpHandler delegate, ExecutorService executor) {
+            this.delegate = delegate;
+            this.executor = executor;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                executor.execute(() -> {
+                    try {
+                        delegate.handle(exchange);
+                    } catch (Exception e) {
+                        LogUtil.error("GeminiPlugin", e, "Unhandled error in pooled handler: " + e.getMessage());
+                    } finally {
+                        exchange.close();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LogUtil.warn("GeminiPlugin", "Worker pool saturated, rejecting " + exchange.getRequestURI());
+                sendGradingErrorResponse(exchange, "Server busy, please retry later", "SERVER_BUSY", 503);
+            }
+        }
+    }
+
+    /**
+     * A streaming response body writer, run on the stream pool
+     */
+    interface StreamTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run a long-lived streaming response on the stream pool so it does not hold an
+     * interactive thread. Replies 503 when STREAM_THREADS streams are already open.
+     */
+    static void runStream(HttpExchange exchange, StreamTask task) throws IOException {
+        try {
+            streamExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LogUtil.error("GeminiPlugin", e, "Error while streaming " + exchange.getRequestURI() + ": "
+                            + e.getMessage());
+                } finally {
+                    exchange.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LogUtil.warn("GeminiPlugin", "Stream limit reached, rejecting " + exchange.getRequestURI());
+            sendGradingErrorResponse(exchange, "Too many open streams, please retry later", "SERVER_BUSY", 503);
+        }
+    }
+
     /**
      * Check if embedded server is running
      */
@@ -278,6 +542,7 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
             LogUtil.info("GeminiPlugin", "=== ENHANCED CHAT API CALLED ===");
             LogUtil.info("GeminiPlugin", "Method: " + exchange.getRequestMethod());
             LogUtil.info("GeminiPlugin", "URI: " + exchange.getRequestURI());
+            GeminiService.Deadline deadline = GeminiService.Deadline.after(CHAT_DEADLINE_MS);
 
             try {
                 // Set CORS headers first
@@ -329,7 +594,7 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 // Retrieve database information if needed
                 if (analysis.needsDatabaseData()) {
                     LogUtil.info("GeminiPlugin", "Fetching database information for: " + analysis.getContentType());
-                    databaseContext = getDatabaseContext(analysis);
+                    databaseContext = getDatabaseContext(analysis, userPrompt);
                     usedDatabase = true;
                 }
 
@@ -350,30 +615,30 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 apiParams.put("temperature", 0.7);
                 apiParams.put("maxOutputTokens", 1500); // Increased for database-enhanced responses
 
-                String aiResponse = geminiService.generateContent("gemini-1.5-flash", enhancedPrompt, apiParams);
+                // Stream tokens to the browser as Server-Sent Events when requested
+                if (isStreamingRequested(exchange, params)) {
+                    String prompt = enhancedPrompt;
+                    boolean withDatabase = usedDatabase;
+                    runStream(exchange, () -> sendStreamingResponse(exchange, geminiService, prompt, apiParams,
+                            userPrompt, sessionId, saveToDb, analysis, withDatabase, deadline));
+                    return;
+                }
+
+                String aiResponse = geminiService.generateContent("gemini-1.5-flash", enhancedPrompt, apiParams,
+                        deadline);
                 LogUtil.info("GeminiPlugin", "AI response received: " +
                         aiResponse.substring(0, Math.min(100, aiResponse.length())) + "...");
 
                 // ========================================
                 // 💾 SAVE TO DATABASE IF REQUESTED
                 // ========================================
-                boolean savedToDb = false;
-                if ("true".equals(saveToDb) && sessionId != null && !sessionId.trim().isEmpty()) {
-                    try {
-                        DatabaseService.saveChatConversation(sessionId, userPrompt, aiResponse, "gemini-1.5-flash");
-                        savedToDb = true;
-                        LogUtil.info("GeminiPlugin", "Chat conversation saved to database");
-                    } catch (Exception dbError) {
-                        LogUtil.error("GeminiPlugin", dbError,
-                                "Failed to save chat to database: " + dbError.getMessage());
-                    }
-                }
+                String saveStatus = saveConversation(sessionId, userPrompt, aiResponse, saveToDb);
 
                 // ========================================
                 // 📤 SEND ENHANCED RESPONSE
                 // ========================================
                 String jsonResponse = buildSuccessResponse(
-                        aiResponse, sessionId, analysis, usedDatabase, savedToDb);
+                        aiResponse, sessionId, analysis, usedDatabase, saveStatus);
 
                 exchange.sendResponseHeaders(200, jsonResponse.getBytes("UTF-8").length);
                 try (OutputStream os = exchange.getResponseBody()) {
@@ -383,16 +648,104 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
 
                 LogUtil.info("GeminiPlugin", "✅ Enhanced response sent successfully!");
 
+            } catch (GeminiCircuitBreaker.OpenException e) {
+                LogUtil.warn("GeminiPlugin", "Chat rejected: " + e.getMessage());
+                sendErrorResponse(exchange, e.getMessage(), GeminiCircuitBreaker.OpenException.ERROR_CODE, 503);
+            } catch (GeminiService.DeadlineExceededException | SocketTimeoutException e) {
+                LogUtil.warn("GeminiPlugin", "Chat timed out: " + e.getMessage());
+                sendErrorResponse(exchange, "Gemini API did not respond in time",
+                        GeminiService.DeadlineExceededException.ERROR_CODE, 504);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in enhanced chat handler: " + e.getMessage());
                 sendErrorResponse(exchange, e.getMessage(), "API_ERROR", 500);
             }
         }
 
+        /**
+         * Check whether the client asked for a streamed (SSE) response
+         */
+        private boolean isStreamingRequested(HttpExchange exchange, Map<String, String> params) {
+            if ("true".equals(params.get("stream"))) {
+                return true;
+            }
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            return accept != null && accept.contains("text/event-stream");
+        }
+
+        /**
+         * Relay Gemini output as Server-Sent Events over a chunked response.
+         * Emits "chunk" events with incremental text, then a final "done" event
+         * carrying the same metadata as the regular JSON response.
+         */
+        private void sendStreamingResponse(HttpExchange exchange, GeminiService geminiService, String prompt,
+                Map<String, Object> apiParams, String userPrompt, String sessionId, String saveToDb,
+                ContentAnalyzer.AnalysisResult analysis, boolean usedDatabase, GeminiService.Deadline deadline)
+                throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // 0 = chunked transfer encoding
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                String aiResponse;
+                try {
+                    aiResponse = geminiService.streamGenerateContent("gemini-1.5-flash", prompt, apiParams,
+                            chunk -> writeSseEvent(os, "chunk", "{\"text\":\"" + escapeJsonString(chunk) + "\"}"),
+                            deadline);
+                } catch (Exception e) {
+                    // Headers are already sent, so report the failure in-stream
+                    LogUtil.error("GeminiPlugin", e, "Error while streaming chat response: " + e.getMessage());
+                    String errorCode = "API_ERROR";
+                    if (e instanceof GeminiCircuitBreaker.OpenException) {
+                        errorCode = GeminiCircuitBreaker.OpenException.ERROR_CODE;
+                    } else if (e instanceof GeminiService.DeadlineExceededException
+                            || e instanceof SocketTimeoutException) {
+                        errorCode = GeminiService.DeadlineExceededException.ERROR_CODE;
+                    }
+                    writeSseEvent(os, "error", "{\"status\":\"error\",\"message\":\"" + escapeJsonString(e.getMessage())
+                            + "\",\"errorCode\":\"" + errorCode + "\",\"timestamp\":" + System.currentTimeMillis() + "}");
+                    return;
+                }
+
+                String saveStatus = saveConversation(sessionId, userPrompt, aiResponse, saveToDb);
+                writeSseEvent(os, "done", buildSuccessResponse(aiResponse, sessionId, analysis, usedDatabase,
+                        saveStatus));
+            }
+
+            LogUtil.info("GeminiPlugin", "✅ Streamed response sent successfully!");
+        }
+
+        /**
+         * Write and flush a single Server-Sent Event
+         */
+        private void writeSseEvent(OutputStream os, String event, String data) throws IOException {
+            os.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes("UTF-8"));
+            os.flush();
+        }
+
+        /**
+         * Save the conversation to the database if requested. Returns "saved" when the
+         * row was written, "queued" when ChatHistoryWriter will write it shortly, or null.
+         */
+        private String saveConversation(String sessionId, String userPrompt, String aiResponse, String saveToDb) {
+            if (!"true".equals(saveToDb) || sessionId == null || sessionId.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                boolean queued = DatabaseService.saveChatConversation(sessionId, userPrompt, aiResponse,
+                        "gemini-1.5-flash");
+                LogUtil.info("GeminiPlugin", "Chat conversation " + (queued ? "queued for saving" : "saved")
+                        + " to database");
+                return queued ? "queued" : "saved";
+            } catch (Exception dbError) {
+                LogUtil.error("GeminiPlugin", dbError, "Failed to save chat to database: " + dbError.getMessage());
+                return null;
+            }
+        }
+
         /**
          * Get database context based on content analysis
          */
-        private String getDatabaseContext(ContentAnalyzer.AnalysisResult analysis) {
+        private String getDatabaseContext(ContentAnalyzer.AnalysisResult analysis, String userPrompt) {
             try {
                 StringBuilder context = new StringBuilder();
 
@@ -400,7 +753,17 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     case MATERIALS:
                         LogUtil.info("GeminiPlugin", "Fetching course materials data...");
 
-                        if (analysis.getQueryType() == ContentAnalyzer.QueryType.SEARCH &&
+                        // Ground the answer in the material text itself when relevant passages exist
+                        String excerpts = null;
+                        if (analysis.getQueryType() != ContentAnalyzer.QueryType.LIST) {
+                            excerpts = MaterialContentIndex.getRelevantPassages(
+                                    analysis.getSearchTerms() != null ? analysis.getSearchTerms() : userPrompt);
+                        }
+
+                        if (excerpts != null) {
+                            context.append("DATABASE CONTEXT - Relevant Excerpts from Course Materials:\n")
+                                    .append(excerpts).append("\n");
+                        } else if (analysis.getQueryType() == ContentAnalyzer.QueryType.SEARCH &&
                                 analysis.getSearchTerms() != null) {
                             // Search for specific materials
                             String materialsSummary = DatabaseService.getMaterialsSummary(analysis.getSearchTerms());
@@ -525,7 +888,7 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
          */
         private String buildSuccessResponse(String aiResponse, String sessionId,
                 ContentAnalyzer.AnalysisResult analysis,
-                boolean usedDatabase, boolean savedToDb) {
+                boolean usedDatabase, String saveStatus) {
             return "{" +
                     "\"status\":\"success\"," +
                     "\"response\":\"" + escapeJsonString(aiResponse) + "\"," +
@@ -534,7 +897,9 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     "\"model\":\"gemini-1.5-flash\"," +
                     "\"server\":\"embedded\"," +
                     "\"port\":" + EMBEDDED_PORT + "," +
-                    "\"savedToDatabase\":" + savedToDb + "," +
+                    // savedToDatabase: written; queuedForDatabase: accepted, written within a second or so
+                    "\"savedToDatabase\":" + "saved".equals(saveStatus) + "," +
+                    "\"queuedForDatabase\":" + "queued".equals(saveStatus) + "," +
                     "\"databaseEnhanced\":" + usedDatabase + "," +
                     "\"detectedContentType\":\"" + analysis.getContentType() + "\"," +
                     "\"detectedQueryType\":\"" + analysis.getQueryType() + "\"," +
@@ -596,6 +961,21 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 debugInfo.put("parsedParameters", params);
                 debugInfo.put("parameterCount", params.size());
                 debugInfo.put("timestamp", System.currentTimeMillis());
+                debugInfo.put("threadPools", getExecutorStats());
+                debugInfo.put("httpConnectionPool", GeminiService.getConnectionPoolStats());
+                debugInfo.put("databasePool", DatabaseService.getPoolStats());
+                debugInfo.put("summaryCache", DatabaseService.getSummaryCacheStats());
+                Map<String, Object> searchIndexes = new HashMap<>();
+                searchIndexes.put("materials", TableSearchIndex.MATERIALS.getStats());
+                searchIndexes.put("assignments", TableSearchIndex.ASSIGNMENTS.getStats());
+                searchIndexes.put("materialContent", MaterialContentIndex.getStats());
+                debugInfo.put("chatHistoryWriter", ChatHistoryWriter.getStats());
+                debugInfo.put("extractedTextCache", ExtractedTextCache.getStats());
+                debugInfo.put("documentExtractor", DocumentExtractor.getStats());
+                debugInfo.put("searchIndex", searchIndexes);
+                debugInfo.put("rateLimiters", GeminiRateLimiter.getAllStats());
+                debugInfo.put("retryBudget", GeminiService.RetryPolicy.getRemainingBudget());
+                debugInfo.put("circuitBreaker", GeminiCircuitBreaker.getInstance().getStats());
 
                 // Check for common issues
                 Map<String, String> issues = new HashMap<>();
@@ -794,12 +1174,21 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 Map<String, String> params = parseParametersImproved(exchange);
                 String sessionId = params.get("sessionId");
                 String limitStr = params.get("limit");
+                String pageSize = params.get("pageSize");
+                String cursor = params.get("cursor");
 
                 if (sessionId == null || sessionId.trim().isEmpty()) {
                     sendErrorResponse(exchange, "sessionId parameter is required");
                     return;
                 }
 
+                if (pageSize != null || cursor != null) {
+                    DatabaseService.Page page = DatabaseService.getChatHistoryPage(sessionId, parsePageSize(pageSize),
+                            cursor);
+                    sendPageResponse(exchange, "\"sessionId\":\"" + escapeJsonString(sessionId) + "\",", page);
+                    return;
+                }
+
                 int limit = 50; // default
                 if (limitStr != null) {
                     try {
@@ -827,6 +1216,8 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     os.write(responseJson.getBytes("UTF-8"));
                 }
 
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, e.getMessage(), 400);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in chat history handler: " + e.getMessage());
                 sendErrorResponse(exchange, e.getMessage());
@@ -909,16 +1300,20 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
             try {
                 String apiKeyStatus = getConfiguredApiKey() != null ? "configured" : "missing";
                 boolean dbConnected = DatabaseService.testConnection();
+                GeminiCircuitBreaker.State breakerState = GeminiCircuitBreaker.getInstance().getState();
 
                 String healthJson = "{" +
-                        "\"status\":\"healthy\"," +
+                        "\"status\":\"" + (breakerState == GeminiCircuitBreaker.State.CLOSED ? "healthy" : "degraded")
+                        + "\"," +
                         "\"server\":\"embedded\"," +
                         "\"plugin\":\"GeminiPlugin\"," +
                         "\"version\":\"2.3.1\"," +
                         "\"timestamp\":" + System.currentTimeMillis() + "," +
                         "\"port\":" + EMBEDDED_PORT + "," +
                         "\"apiKey\":\"" + apiKeyStatus + "\"," +
-                        "\"database\":\"" + (dbConnected ? "connected" : "disconnected") + "\"" +
+                        "\"database\":\"" + (dbConnected ? "connected" : "disconnected") + "\"," +
+                        "\"geminiCircuit\":\"" + breakerState.name() + "\"," +
+                        "\"chatHistoryDropped\":" + ChatHistoryWriter.getDroppedCount() +
                         "}";
 
                 setCorsHeaders(exchange);
@@ -1076,6 +1471,8 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     "            <p><strong>URL:</strong> <code>POST /chat</code></p>\n" +
                     "            <p><strong>Features:</strong> Auto-detects course/assignment questions & uses real database data</p>\n"
                     +
+                    "            <p><strong>Streaming:</strong> add <code>stream=true</code> to receive Server-Sent Events (chunk / done)</p>\n"
+                    +
                     "            <button class=\"test-button ai-button\" onclick=\"testCourseQuestion()\">📚 Ask About Courses</button>\n"
                     +
                     "            <button class=\"test-button ai-button\" onclick=\"testAssignmentQuestion()\">📝 Ask About Assignments</button>\n"
@@ -1323,6 +1720,18 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 Map<String, String> params = parseParametersImproved(exchange);
                 String search = params.get("search");
                 String course = params.get("course");
+                String pageSize = params.get("pageSize");
+                String cursor = params.get("cursor");
+
+                // Keyset pagination for listings (search results are already ranked and capped)
+                if ((pageSize != null || cursor != null) && (search == null || search.trim().isEmpty())) {
+                    DatabaseService.Page page = DatabaseService.getMaterialsPage(course, parsePageSize(pageSize),
+                            cursor);
+                    boolean byCourse = course != null && !course.trim().isEmpty();
+                    sendPageResponse(exchange, "\"queryType\":\"" + (byCourse ? "course" : "all") + "\"," +
+                            (byCourse ? "\"course\":\"" + escapeJsonString(course) + "\"," : ""), page);
+                    return;
+                }
 
                 List<Map<String, Object>> materials;
                 String queryType;
@@ -1357,6 +1766,8 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     os.write(responseJson.getBytes("UTF-8"));
                 }
 
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, e.getMessage(), 400);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in database materials handler: " + e.getMessage());
                 sendErrorResponse(exchange, e.getMessage());
@@ -1379,6 +1790,23 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 String status = params.get("status");
                 String course = params.get("course");
                 String upcoming = params.get("upcoming");
+                String pageSize = params.get("pageSize");
+                String cursor = params.get("cursor");
+
+                // Keyset pagination for listings (search and upcoming results are already capped)
+                if ((pageSize != null || cursor != null) && !"true".equals(upcoming)
+                        && (search == null || search.trim().isEmpty())) {
+                    DatabaseService.Page page = DatabaseService.getAssignmentsPage(status, course,
+                            parsePageSize(pageSize), cursor);
+                    boolean byStatus = status != null && !status.trim().isEmpty();
+                    boolean byCourse = !byStatus && course != null && !course.trim().isEmpty();
+                    sendPageResponse(exchange,
+                            "\"queryType\":\"" + (byStatus ? "status" : byCourse ? "course" : "all") + "\"," +
+                                    (byStatus ? "\"status\":\"" + escapeJsonString(status) + "\"," : "") +
+                                    (byCourse ? "\"course\":\"" + escapeJsonString(course) + "\"," : ""),
+                            page);
+                    return;
+                }
 
                 List<Map<String, Object>> assignments;
                 String queryType;
@@ -1420,6 +1848,8 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                     os.write(responseJson.getBytes("UTF-8"));
                 }
 
+            } catch (IllegalArgumentException e) {
+                sendErrorResponse(exchange, e.getMessage(), 400);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in database assignments handler: " + e.getMessage());
                 sendErrorResponse(exchange, e.getMessage());
@@ -1530,16 +1960,58 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
      * Send error response helper
      */
     private static void sendErrorResponse(HttpExchange exchange, String message) throws IOException {
+        sendErrorResponse(exchange, message, 500);
+    }
+
+    private static void sendErrorResponse(HttpExchange exchange, String message, int statusCode) throws IOException {
         String errorJson = "{\"status\":\"error\",\"message\":\"" + escapeJsonString(message) + "\",\"timestamp\":"
                 + System.currentTimeMillis() + "}";
         setCorsHeaders(exchange);
         exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(500, errorJson.getBytes("UTF-8").length);
+        exchange.sendResponseHeaders(statusCode, errorJson.getBytes("UTF-8").length);
         try (OutputStream os = exchange.getResponseBody()) {
             os.write(errorJson.getBytes("UTF-8"));
         }
     }
 
+    /**
+     * Page size from the pageSize parameter, or the default when missing or invalid
+     */
+    private static int parsePageSize(String pageSize) {
+        if (pageSize != null) {
+            try {
+                return Integer.parseInt(pageSize.trim());
+            } catch (NumberFormatException e) {
+                // use default
+            }
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Send one page of a keyset-paginated listing; pass nextCursor back as cursor for the next page
+     */
+    private static void sendPageResponse(HttpExchange exchange, String extraFields, DatabaseService.Page page)
+            throws IOException {
+        String responseJson = "{" +
+                "\"status\":\"success\"," +
+                extraFields +
+                "\"count\":" + page.getRows().size() + "," +
+                "\"hasMore\":" + (page.getNextCursor() != null) + "," +
+                "\"nextCursor\":" + (page.getNextCursor() != null
+                        ? "\"" + page.getNextCursor() + "\""
+                        : "null")
+                + "," +
+                "\"data\":" + new Gson().toJson(page.getRows()) + "," +
+                "\"timestamp\":" + System.currentTimeMillis() +
+                "}";
+
+        exchange.sendResponseHeaders(200, responseJson.getBytes("UTF-8").length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseJson.getBytes("UTF-8"));
+        }
+    }
+
     /**
      * Set CORS headers for all responses
      */
@@ -1879,6 +2351,9 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
 
                 LogUtil.info("GeminiPlugin", "✅ Auto-grading completed successfully");
 
+            } catch (GeminiCircuitBreaker.OpenException e) {
+                LogUtil.warn("GeminiPlugin", "Grading rejected: " + e.getMessage());
+                sendGradingErrorResponse(exchange, e.getMessage(), GeminiCircuitBreaker.OpenException.ERROR_CODE, 503);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in auto-grading handler: " + e.getMessage());
                 sendGradingErrorResponse(exchange, e.getMessage(), "GRADING_ERROR", 500);
@@ -1938,45 +2413,34 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 // Initialize auto-grading service
                 AutoGradingService gradingService = new AutoGradingService(apiKey);
 
-                // Grade each assignment
-                List<Map<String, Object>> results = new ArrayList<>();
-                int successCount = 0;
-                int errorCount = 0;
-
+                List<String> assignmentIds = new ArrayList<>();
                 for (Map<String, Object> assignment : assignments) {
-                    String assignmentId = assignment.get("id").toString();
+                    assignmentIds.add(assignment.get("id").toString());
+                }
 
-                    try {
-                        LogUtil.info("GeminiPlugin", "Batch grading assignment: " + assignmentId);
+                // Async mode: run as a background job and return its ID immediately
+                if ("true".equals(params.get("async"))) {
+                    JobRegistry.Job job = JobRegistry.submit("grading", assignments.size(),
+                            runningJob -> gradingService.gradeAssignments(assignmentIds,
+                                    (index, outcome) -> runningJob.addResult(index,
+                                            buildGradingResultMap(assignments.get(index), outcome))));
+                    sendJobAcceptedResponse(exchange, job);
+                    return;
+                }
 
-                        AutoGradingService.GradingResult gradingResult = gradingService.gradeAssignment(assignmentId);
+                // Grade assignments concurrently (paced by the grading engine)
+                List<AutoGradingService.BatchItemResult> outcomes = gradingService.gradeAssignments(assignmentIds);
 
-                        Map<String, Object> resultMap = new HashMap<>();
-                        resultMap.put("assignmentId", assignmentId);
-                        resultMap.put("studentName", assignment.get("c_student_name"));
-                        resultMap.put("title", assignment.get("c_assignment_title"));
-                        resultMap.put("status", "success");
-                        resultMap.put("grade", gradingResult.getGrade());
-                        resultMap.put("percentage", gradingResult.getPercentage());
+                List<Map<String, Object>> results = new ArrayList<>();
+                int successCount = 0;
+                int errorCount = 0;
 
-                        results.add(resultMap);
+                for (int i = 0; i < assignments.size(); i++) {
+                    AutoGradingService.BatchItemResult outcome = outcomes.get(i);
+                    results.add(buildGradingResultMap(assignments.get(i), outcome));
+                    if (outcome.isSuccess()) {
                         successCount++;
-
-                        // Small delay to avoid rate limiting
-                        Thread.sleep(1000);
-
-                    } catch (Exception e) {
-                        LogUtil.error("GeminiPlugin", e,
-                                "Error grading assignment " + assignmentId + ": " + e.getMessage());
-
-                        Map<String, Object> resultMap = new HashMap<>();
-                        resultMap.put("assignmentId", assignmentId);
-                        resultMap.put("studentName", assignment.get("c_student_name"));
-                        resultMap.put("title", assignment.get("c_assignment_title"));
-                        resultMap.put("status", "error");
-                        resultMap.put("error", e.getMessage());
-
-                        results.add(resultMap);
+                    } else {
                         errorCount++;
                     }
                 }
@@ -2003,6 +2467,9 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 LogUtil.info("GeminiPlugin",
                         "✅ Batch grading completed: " + successCount + " success, " + errorCount + " errors");
 
+            } catch (RejectedExecutionException e) {
+                LogUtil.warn("GeminiPlugin", "Job rejected: " + e.getMessage());
+                sendGradingErrorResponse(exchange, e.getMessage(), "TOO_MANY_JOBS", 503);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in batch grading handler: " + e.getMessage());
                 sendGradingErrorResponse(exchange, e.getMessage(), "BATCH_GRADING_ERROR", 500);
@@ -2010,6 +2477,27 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
         }
     }
 
+    /**
+     * Build the per-assignment entry of a batch grading response
+     */
+    private static Map<String, Object> buildGradingResultMap(Map<String, Object> assignment,
+            AutoGradingService.BatchItemResult outcome) {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("assignmentId", outcome.getAssignmentId());
+        resultMap.put("studentName", assignment.get("c_student_name"));
+        resultMap.put("title", assignment.get("c_assignment_title"));
+
+        if (outcome.isSuccess()) {
+            resultMap.put("status", "success");
+            resultMap.put("grade", outcome.getResult().getGrade());
+            resultMap.put("percentage", outcome.getResult().getPercentage());
+        } else {
+            resultMap.put("status", "error");
+            resultMap.put("error", outcome.getError());
+        }
+        return resultMap;
+    }
+
     /**
      * Get ungraded assignments from database
      */
@@ -2169,6 +2657,9 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                         "Recommendation: " + result.getRecommendationPercentage() + "%" +
                         (isPreUpload ? " (pre-upload analysis)" : ""));
 
+            } catch (GeminiCircuitBreaker.OpenException e) {
+                LogUtil.warn("GeminiPlugin", "Evaluation rejected: " + e.getMessage());
+                sendMaterialErrorResponse(exchange, e.getMessage(), GeminiCircuitBreaker.OpenException.ERROR_CODE, 503);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in material evaluation handler: " + e.getMessage());
                 sendMaterialErrorResponse(exchange, e.getMessage(), "EVALUATION_ERROR", 500);
@@ -2387,6 +2878,17 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 // Initialize evaluation service
                 MaterialEvaluationService evaluationService = new MaterialEvaluationService(apiKey);
 
+                // Async mode: run as a background job and return its ID immediately
+                if ("true".equals(params.get("async"))) {
+                    JobRegistry.Job job = JobRegistry.submit("evaluation", materials.size(), runningJob -> {
+                        for (int i = 0; i < materials.size(); i++) {
+                            runningJob.addResult(i, evaluateMaterialItem(evaluationService, materials.get(i)));
+                        }
+                    });
+                    sendJobAcceptedResponse(exchange, job);
+                    return;
+                }
+
                 // Evaluate each material
                 List<Map<String, Object>> results = new ArrayList<>();
                 int successCount = 0;
@@ -2395,51 +2897,17 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 int needsEnhancementCount = 0;
 
                 for (Map<String, Object> material : materials) {
-                    String materialId = material.get("id").toString();
-                    String materialCourse = (String) material.get("c_select_course");
-                    String materialDesc = (String) material.get("c_course_information");
-                    String materialFile = (String) material.get("c_course_fileupload");
+                    Map<String, Object> resultMap = evaluateMaterialItem(evaluationService, material);
+                    results.add(resultMap);
 
-                    try {
-                        LogUtil.info("GeminiPlugin", "Batch evaluating material: " + materialFile);
-
-                        MaterialEvaluationService.EvaluationResult evalResult = evaluationService.evaluateMaterial(
-                                materialId, materialCourse, materialDesc, materialFile);
-
-                        Map<String, Object> resultMap = new HashMap<>();
-                        resultMap.put("materialId", materialId);
-                        resultMap.put("filename", materialFile);
-                        resultMap.put("course", materialCourse);
-                        resultMap.put("status", "success");
-                        resultMap.put("recommendation", evalResult.getRecommendationPercentage());
-                        resultMap.put("isRecommended", evalResult.isRecommended());
-                        resultMap.put("requiresEnhancement", evalResult.getRecommendationPercentage() < 80);
-                        resultMap.put("overallRating", evalResult.getOverallRating());
-
-                        results.add(resultMap);
+                    if ("success".equals(resultMap.get("status"))) {
                         successCount++;
-
-                        if (evalResult.getRecommendationPercentage() >= 80) {
+                        if (Boolean.FALSE.equals(resultMap.get("requiresEnhancement"))) {
                             recommendedCount++;
                         } else {
                             needsEnhancementCount++;
                         }
-
-                        // Small delay to avoid rate limiting
-                        Thread.sleep(1000);
-
-                    } catch (Exception e) {
-                        LogUtil.error("GeminiPlugin", e,
-                                "Error evaluating material " + materialId + ": " + e.getMessage());
-
-                        Map<String, Object> resultMap = new HashMap<>();
-                        resultMap.put("materialId", materialId);
-                        resultMap.put("filename", materialFile);
-                        resultMap.put("course", materialCourse);
-                        resultMap.put("status", "error");
-                        resultMap.put("error", e.getMessage());
-
-                        results.add(resultMap);
+                    } else {
                         errorCount++;
                     }
                 }
@@ -2468,6 +2936,9 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
                 LogUtil.info("GeminiPlugin", "✅ Batch evaluation completed: " + successCount + " success, " + errorCount
                         + " errors, " + recommendedCount + " recommended");
 
+            } catch (RejectedExecutionException e) {
+                LogUtil.warn("GeminiPlugin", "Job rejected: " + e.getMessage());
+                sendMaterialErrorResponse(exchange, e.getMessage(), "TOO_MANY_JOBS", 503);
             } catch (Exception e) {
                 LogUtil.error("GeminiPlugin", e, "Error in batch material evaluation handler: " + e.getMessage());
                 sendMaterialErrorResponse(exchange, e.getMessage(), "BATCH_EVALUATION_ERROR", 500);
@@ -2475,6 +2946,159 @@ public class GeminiPlugin extends DefaultApplicationPlugin {
         }
     }
 
+    /**
+     * Evaluate one material for a batch and build its response entry
+     */
+    private static Map<String, Object> evaluateMaterialItem(MaterialEvaluationService evaluationService,
+            Map<String, Object> material) {
+        String materialId = material.get("id").toString();
+        String materialCourse = (String) material.get("c_select_course");
+        String materialDesc = (String) material.get("c_course_information");
+        String materialFile = (String) material.get("c_course_fileupload");
+
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("materialId", materialId);
+        resultMap.put("filename", materialFile);
+        resultMap.put("course", materialCourse);
+
+        try {
+            LogUtil.info("GeminiPlugin", "Batch evaluating material: " + materialFile);
+
+            MaterialEvaluationService.EvaluationResult evalResult = evaluationService.evaluateMaterial(
+                    materialId, materialCourse, materialDesc, materialFile);
+
+            resultMap.put("status", "success");
+            resultMap.put("recommendation", evalResult.getRecommendationPercentage());
+            resultMap.put("isRecommended", evalResult.isRecommended());
+            resultMap.put("requiresEnhancement", evalResult.getRecommendationPercentage() < 80);
+            resultMap.put("overallRating", evalResult.getOverallRating());
+
+        } catch (Exception e) {
+            LogUtil.error("GeminiPlugin", e, "Error evaluating material " + materialId + ": " + e.getMessage());
+
+            resultMap.put("status", "error");
+            resultMap.put("error", e.getMessage());
+        }
+        return resultMap;
+    }
+
+    /**
+     * Reply 202 with the ID and URLs of a submitted job
+     */
+    private static void sendJobAcceptedResponse(HttpExchange exchange, JobRegistry.Job job) throws IOException {
+        String responseJson = "{" +
+                "\"status\":\"accepted\"," +
+                "\"message\":\"Job submitted\"," +
+                "\"jobId\":\"" + job.getId() + "\"," +
+                "\"statusUrl\":\"/jobs/" + job.getId() + "\"," +
+                "\"streamUrl\":\"/jobs/" + job.getId() + "/stream\"," +
+                "\"timestamp\":" + System.currentTimeMillis() +
+                "}";
+
+        exchange.sendResponseHeaders(202, responseJson.getBytes("UTF-8").length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseJson.getBytes("UTF-8"));
+        }
+    }
+
+    /**
+     * Jobs Handler - Poll progress or stream results of background batch jobs
+     * GET /jobs/{id} returns progress and partial results in input order
+     * GET /jobs/{id}/stream streams per-item results as NDJSON (or SSE with format=sse)
+     */
+    static class JobsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                setCorsHeaders(exchange);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+                if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+
+                // Path is /jobs/{id} or /jobs/{id}/stream
+                String[] segments = exchange.getRequestURI().getPath().split("/");
+                String jobId = segments.length > 2 ? segments[2] : null;
+                boolean stream = segments.length > 3 && "stream".equals(segments[3]);
+
+                JobRegistry.Job job = JobRegistry.getJob(jobId);
+                if (job == null) {
+                    sendGradingErrorResponse(exchange, "Job not found: " + jobId, "JOB_NOT_FOUND", 404);
+                    return;
+                }
+
+                if (stream) {
+                    Map<String, String> params = parseParametersImproved(exchange);
+                    runStream(exchange, () -> streamJobResults(exchange, job, "sse".equals(params.get("format"))));
+                    return;
+                }
+
+                Gson gson = new Gson();
+                String responseJson = "{" +
+                        "\"status\":\"success\"," +
+                        "\"job\":" + gson.toJson(job.toMap(true)) + "," +
+                        "\"timestamp\":" + System.currentTimeMillis() +
+                        "}";
+
+                exchange.sendResponseHeaders(200, responseJson.getBytes("UTF-8").length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(responseJson.getBytes("UTF-8"));
+                }
+
+            } catch (Exception e) {
+                LogUtil.error("GeminiPlugin", e, "Error in jobs handler: " + e.getMessage());
+                sendErrorResponse(exchange, e.getMessage());
+            }
+        }
+
+        /**
+         * Write each item result as soon as it completes, then a final job summary.
+         * While nothing completes a heartbeat is written every 15s so proxies keep the
+         * connection open: an SSE comment, or a {"heartbeat":...} line in NDJSON.
+         */
+        private void streamJobResults(HttpExchange exchange, JobRegistry.Job job, boolean sse)
+                throws IOException, InterruptedException {
+            exchange.getResponseHeaders().set("Content-Type",
+                    sse ? "text/event-stream; charset=UTF-8" : "application/x-ndjson; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0); // 0 = chunked transfer encoding
+
+            Gson gson = new Gson();
+            try (OutputStream os = exchange.getResponseBody()) {
+                int delivered = 0;
+                while (true) {
+                    List<Map<String, Object>> newResults = job.awaitResults(delivered, 15000);
+                    for (Map<String, Object> result : newResults) {
+                        writeJobEvent(os, sse, "result", gson.toJson(result));
+                    }
+                    delivered += newResults.size();
+
+                    if (job.isFinished() && newResults.isEmpty()) {
+                        break;
+                    }
+                    if (newResults.isEmpty()) {
+                        writeHeartbeat(os, sse);
+                    }
+                }
+                writeJobEvent(os, sse, "done", gson.toJson(job.toMap(false)));
+            }
+        }
+
+        private void writeHeartbeat(OutputStream os, boolean sse) throws IOException {
+            String line = sse ? ": heartbeat\n\n" : "{\"heartbeat\":" + System.currentTimeMillis() + "}\n";
+            os.write(line.getBytes("UTF-8"));
+            os.flush();
+        }
+
+        private void writeJobEvent(OutputStream os, boolean sse, String event, String json) throws IOException {
+            String line = sse ? "event: " + event + "\ndata: " + json + "\n\n" : json + "\n";
+            os.write(line.getBytes("UTF-8"));
+            os.flush();
+        }
+    }
+
     /**
      * Get unevaluated materials from database
      */
@@ -0,0 +1,263 @@
+package org.joget.gemini;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Client-side rate limiter for Gemini traffic, one instance per API key and model
+ * ✅ RPM / TPM: Token buckets for requests and tokens per minute
+ * ✅ ADAPTIVE: AIMD concurrency limit that halves on 429/503 and grows on success
+ * ✅ RETRY-AFTER: Pauses all callers until the server's Retry-After has passed
+ */
+public class GeminiRateLimiter {
+
+    // Budgets (override with -Dgemini.ratelimit.* system properties)
+    private static final int REQUESTS_PER_MINUTE = Integer.getInteger("gemini.ratelimit.rpm", 60);
+    private static final long TOKENS_PER_MINUTE = Long.getLong("gemini.ratelimit.tpm", 1000000L);
+    private static final int INITIAL_CONCURRENCY = Integer.getInteger("gemini.ratelimit.initialConcurrency", 8);
+    private static final int MAX_CONCURRENCY = Integer.getInteger("gemini.ratelimit.maxConcurrency", 64);
+    private static final long MAX_WAIT_MS = Long.getLong("gemini.ratelimit.maxWaitMs", 120000L);
+    private static final long DEFAULT_BACKOFF_MS = Long.getLong("gemini.ratelimit.defaultBackoffMs", 2000L);
+
+    private static final Map<String, GeminiRateLimiter> limiters = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService asyncScheduler;
+
+    private final String name;
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private double requestTokens;
+    private double tokenTokens;
+    private long lastRefill = System.currentTimeMillis();
+
+    private double concurrencyLimit = INITIAL_CONCURRENCY;
+    private int inFlight;
+    private long blockedUntil;
+
+    private long throttledCount;
+    private long acquiredCount;
+
+    private GeminiRateLimiter(String name, int requestsPerMinute, long tokensPerMinute) {
+        this.name = name;
+        this.requestCapacity = Math.max(1, requestsPerMinute);
+        this.tokenCapacity = Math.max(1, tokensPerMinute);
+        this.requestTokens = requestCapacity;
+        this.tokenTokens = tokenCapacity;
+    }
+
+    /**
+     * Get the shared limiter for an API key and model
+     */
+    public static GeminiRateLimiter forKey(String apiKey, String model) {
+        String key = (apiKey != null ? Integer.toHexString(apiKey.hashCode()) : "none") + "/" + model;
+        return limiters.computeIfAbsent(key,
+                k -> new GeminiRateLimiter(k, REQUESTS_PER_MINUTE, TOKENS_PER_MINUTE));
+    }
+
+    /**
+     * Rough token estimate for a request: ~4 characters per token plus the output budget
+     */
+    public static long estimateTokens(String prompt, Map<String, Object> parameters) {
+        long promptTokens = prompt != null ? prompt.length() / 4 + 1 : 1;
+        Object maxOutput = parameters != null ? parameters.get("maxOutputTokens") : null;
+        long outputTokens = maxOutput instanceof Number ? ((Number) maxOutput).longValue() : 1024;
+        return promptTokens + outputTokens;
+    }
+
+    /**
+     * Block until a request slot is available, or fail after MAX_WAIT_MS
+     */
+    public Permit acquire(long tokens) throws IOException {
+        return acquire(tokens, MAX_WAIT_MS);
+    }
+
+    /**
+     * Block until a request slot is available, waiting no longer than maxWaitMs (capped at MAX_WAIT_MS)
+     */
+    public Permit acquire(long tokens, long maxWaitMs) throws IOException {
+        long waitLimit = Math.min(maxWaitMs, MAX_WAIT_MS);
+        long deadline = System.currentTimeMillis() + waitLimit;
+        synchronized (this) {
+            while (true) {
+                long waitMs = tryAcquireLocked(tokens);
+                if (waitMs == 0) {
+                    return new Permit();
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Rate limit wait exceeded " + waitLimit + "ms for " + name);
+                }
+                try {
+                    wait(Math.min(waitMs, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for rate limit", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Acquire without blocking the caller; the future completes once a slot frees up
+     */
+    public CompletableFuture<Permit> acquireAsync(long tokens) {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        scheduleAcquire(future, tokens, System.currentTimeMillis() + MAX_WAIT_MS);
+        return future;
+    }
+
+    private void scheduleAcquire(CompletableFuture<Permit> future, long tokens, long deadline) {
+        long waitMs;
+        synchronized (this) {
+            waitMs = tryAcquireLocked(tokens);
+        }
+        if (waitMs == 0) {
+            future.complete(new Permit());
+        } else if (System.currentTimeMillis() + waitMs > deadline) {
+            future.completeExceptionally(
+                    new IOException("Rate limit wait exceeded " + MAX_WAIT_MS + "ms for " + name));
+        } else {
+            getAsyncScheduler().schedule(() -> scheduleAcquire(future, tokens, deadline), waitMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Take a slot if possible. Returns 0 on success, otherwise a suggested wait in ms.
+     */
+    private long tryAcquireLocked(long tokens) {
+        long now = System.currentTimeMillis();
+        refill(now);
+
+        if (now < blockedUntil) {
+            return blockedUntil - now;
+        }
+        if (inFlight >= (int) concurrencyLimit) {
+            return 50; // re-checked sooner when a permit is released
+        }
+
+        // A single request larger than the whole TPM budget may proceed once the bucket is full
+        double neededTokens = Math.min(tokens, tokenCapacity);
+        if (requestTokens < 1 || tokenTokens < neededTokens) {
+            throttledCount++;
+            long requestWait = requestTokens < 1 ? (long) Math.ceil((1 - requestTokens) * 60000 / requestCapacity) : 0;
+            long tokenWait = tokenTokens < neededTokens
+                    ? (long) Math.ceil((neededTokens - tokenTokens) * 60000 / tokenCapacity)
+                    : 0;
+            return Math.max(1, Math.max(requestWait, tokenWait));
+        }
+
+        requestTokens -= 1;
+        tokenTokens -= neededTokens;
+        inFlight++;
+        acquiredCount++;
+        return 0;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            requestTokens = Math.min(requestCapacity, requestTokens + elapsed * requestCapacity / 60000.0);
+            tokenTokens = Math.min(tokenCapacity, tokenTokens + elapsed * tokenCapacity / 60000.0);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * Update the adaptive limit from a response status (-1 when no response was received)
+     */
+    private synchronized void onComplete(int statusCode, String retryAfter) {
+        inFlight = Math.max(0, inFlight - 1);
+
+        if (statusCode == 429 || statusCode == 503) {
+            // Multiplicative decrease and a shared pause honouring Retry-After
+            concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+            long backoffMs = parseRetryAfter(retryAfter);
+            blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + backoffMs);
+            LogUtil.warn("GeminiRateLimiter", name + " throttled (HTTP " + statusCode + "), concurrency limit now "
+                    + (int) concurrencyLimit + ", pausing " + backoffMs + "ms");
+        } else if (statusCode >= 200 && statusCode < 300) {
+            // Additive increase: about +1 per limit's worth of successful calls
+            concurrencyLimit = Math.min(MAX_CONCURRENCY, concurrencyLimit + 1.0 / concurrencyLimit);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Parse a Retry-After header given in seconds; fall back to the default backoff
+     */
+    static long parseRetryAfter(String retryAfter) {
+        long retryAfterMs = GeminiService.ApiException.parseRetryAfter(retryAfter);
+        return retryAfterMs >= 0 ? retryAfterMs : DEFAULT_BACKOFF_MS;
+    }
+
+    /**
+     * Limiter state for monitoring
+     */
+    public synchronized Map<String, Object> getStats() {
+        refill(System.currentTimeMillis());
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("concurrencyLimit", (int) concurrencyLimit);
+        stats.put("inFlight", inFlight);
+        stats.put("availableRequests", (int) requestTokens);
+        stats.put("availableTokens", (long) tokenTokens);
+        stats.put("pausedForMs", Math.max(0, blockedUntil - System.currentTimeMillis()));
+        stats.put("acquired", acquiredCount);
+        stats.put("throttled", throttledCount);
+        return stats;
+    }
+
+    /**
+     * Stats for every limiter, keyed by masked API key and model
+     */
+    public static Map<String, Object> getAllStats() {
+        Map<String, Object> all = new HashMap<>();
+        for (Map.Entry<String, GeminiRateLimiter> entry : limiters.entrySet()) {
+            all.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return all;
+    }
+
+    private static synchronized ScheduledExecutorService getAsyncScheduler() {
+        if (asyncScheduler == null) {
+            asyncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gemini-ratelimit");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return asyncScheduler;
+    }
+
+    /**
+     * Stop the async scheduler and forget all limiter state
+     */
+    public static synchronized void shutdown() {
+        if (asyncScheduler != null) {
+            asyncScheduler.shutdownNow();
+            asyncScheduler = null;
+        }
+        limiters.clear();
+    }
+
+    /**
+     * A granted request slot; release exactly once with the outcome
+     */
+    public class Permit {
+        private boolean released;
+
+        public void release(int statusCode, String retryAfter) {
+            if (!released) {
+                released = true;
+                onComplete(statusCode, retryAfter);
+            }
+        }
+    }
+}
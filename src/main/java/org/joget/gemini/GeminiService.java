@@ -3,21 +3,74 @@ package org.joget.gemini;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.joget.commons.util.LogUtil;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class GeminiService {
 
+    // Shared connection pool settings (override with -Dgemini.http.* system properties)
+    private static final int MAX_CONNECTIONS_TOTAL = Integer.getInteger("gemini.http.maxTotal", 50);
+    private static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger("gemini.http.maxPerRoute", 20);
+    private static final long KEEP_ALIVE_MS = Long.getLong("gemini.http.keepAliveMs", 30000L);
+    private static final long IDLE_EVICT_MS = Long.getLong("gemini.http.idleEvictMs", 60000L);
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = Integer.getInteger("gemini.http.validateAfterMs", 2000);
+
+    // Timeouts so a hung upstream can never block a caller indefinitely
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("gemini.http.connectTimeoutMs", 10000);
+    private static final int SOCKET_TIMEOUT_MS = Integer.getInteger("gemini.http.socketTimeoutMs", 60000);
+    private static final int CONNECTION_REQUEST_TIMEOUT_MS = Integer.getInteger(
+            "gemini.http.connectionRequestTimeoutMs", 5000);
+    private static final RequestConfig DEFAULT_REQUEST_CONFIG = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT_MS)
+            .setSocketTimeout(SOCKET_TIMEOUT_MS)
+            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MS)
+            .build();
+
+    // Non-blocking client settings for generateContentAsync
+    private static final int ASYNC_IO_THREADS = Integer.getInteger("gemini.http.async.ioThreads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final int ASYNC_MAX_CONNECTIONS_TOTAL = Integer.getInteger("gemini.http.async.maxTotal", 200);
+    private static final int ASYNC_MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger("gemini.http.async.maxPerRoute",
+            200);
+
+    // One client per bundle; created lazily and closed from Activator.stop()
+    private static PoolingHttpClientConnectionManager connectionManager;
+    private static CloseableHttpClient sharedClient;
+    private static CloseableHttpAsyncClient sharedAsyncClient;
+    // Aborts requests still running when their caller's deadline passes
+    private static ScheduledThreadPoolExecutor deadlineTimer;
+
     private final String apiKey;
     private final String baseUrl = "https://generativelanguage.googleapis.com/v1/models/";
     private final Gson gson;
@@ -31,12 +84,411 @@ public class GeminiService {
      * Generate content using Gemini API
      */
     public String generateContent(String model, String prompt, Map<String, Object> parameters) throws IOException {
+        return generateContent(model, prompt, parameters, Deadline.none());
+    }
+
+    /**
+     * Generate content, giving up once the caller's deadline has passed
+     */
+    public String generateContent(String model, String prompt, Map<String, Object> parameters, Deadline deadline)
+            throws IOException {
         LogUtil.info("GeminiService", "Generating content with model: " + model);
 
-        String url = baseUrl + model + ":generateContent?key=" + apiKey;
+        HttpPost post = buildRequest(model, prompt, parameters, false);
+
+        // Fail fast while Gemini is degraded, then wait for a slot under the shared limits
+        deadline.check();
+        GeminiCircuitBreaker breaker = GeminiCircuitBreaker.getInstance();
+        breaker.acquirePermission();
+        GeminiRateLimiter.Permit permit = acquireRateLimit(model, prompt, parameters, breaker, deadline);
+        applyDeadline(post, deadline);
+        int statusCode = -1;
+        String retryAfter = null;
+        Exception failure = null;
+        long startTime = System.currentTimeMillis();
+
+        ScheduledFuture<?> abort = scheduleAbort(post::abort, deadline);
+
+        // Make HTTP request on the shared pooled client
+        try {
+            CloseableHttpClient client = getHttpClient();
+
+            try (CloseableHttpResponse response = client.execute(post)) {
+                HttpEntity entity = response.getEntity();
+                String responseString = EntityUtils.toString(entity, "UTF-8");
+
+                statusCode = response.getStatusLine().getStatusCode();
+                retryAfter = getRetryAfter(response);
+                return handleResponse(statusCode, responseString, retryAfter);
+            }
+        } catch (IOException e) {
+            if (abortedByDeadline(abort)) {
+                failure = new DeadlineExceededException();
+                LogUtil.warn("GeminiService", "API call aborted at the caller's deadline");
+                throw (DeadlineExceededException) failure;
+            }
+            failure = e;
+            LogUtil.error("GeminiService", e, "IOException during API call: " + e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } catch (Exception e) {
+            failure = e;
+            LogUtil.error("GeminiService", e, "Unexpected error during API call: " + e.getMessage());
+            throw new RuntimeException("Unexpected error during API call: " + e.getMessage(), e);
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            permit.release(statusCode, retryAfter);
+            breaker.record(failure != null && GeminiCircuitBreaker.isFailure(failure),
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Generate content asynchronously on the shared non-blocking HTTP client.
+     * The returned future completes on an I/O dispatcher thread, so no caller
+     * thread is held while the request is in flight. Only the client's timeouts
+     * bound the call; use the Deadline overload to bound its total time.
+     */
+    public CompletableFuture<String> generateContentAsync(String model, String prompt,
+            Map<String, Object> parameters) {
+        return generateContentAsync(model, prompt, parameters, Deadline.none());
+    }
+
+    /**
+     * Generate content asynchronously; the future fails with DeadlineExceededException
+     * if no answer has arrived by the deadline, including time spent waiting for a slot
+     */
+    public CompletableFuture<String> generateContentAsync(String model, String prompt,
+            Map<String, Object> parameters, Deadline deadline) {
+        LogUtil.info("GeminiService", "Generating content asynchronously with model: " + model);
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        HttpPost post;
+        try {
+            deadline.check();
+            post = buildRequest(model, prompt, parameters, false);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        GeminiCircuitBreaker breaker = GeminiCircuitBreaker.getInstance();
+        try {
+            breaker.acquirePermission();
+        } catch (GeminiCircuitBreaker.OpenException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        // Rate limiting is scheduled rather than blocking, so the caller is never held
+        GeminiRateLimiter.forKey(apiKey, model)
+                .acquireAsync(GeminiRateLimiter.estimateTokens(prompt, parameters))
+                .whenComplete((permit, error) -> {
+                    if (error != null) {
+                        breaker.releasePermission();
+                        result.completeExceptionally(error);
+                    } else if (deadline.remainingMs() == 0) {
+                        permit.release(-1, null);
+                        breaker.releasePermission();
+                        result.completeExceptionally(new DeadlineExceededException());
+                    } else {
+                        try {
+                            applyDeadline(post, deadline);
+                            executeAsync(post, permit, breaker, result, deadline);
+                        } catch (RuntimeException e) {
+                            // e.g. the client was closed during shutdown; nothing was sent
+                            permit.release(-1, null);
+                            breaker.releasePermission();
+                            LogUtil.error("GeminiService", e, "Could not start async API call: " + e.getMessage());
+                            result.completeExceptionally(new IOException("Could not start async API call: "
+                                    + e.getMessage(), e));
+                        }
+                    }
+                });
+
+        return result;
+    }
+
+    private void executeAsync(HttpPost post, GeminiRateLimiter.Permit permit, GeminiCircuitBreaker breaker,
+            CompletableFuture<String> result, Deadline deadline) {
+        long startTime = System.currentTimeMillis();
+        Future<HttpResponse> call = getAsyncHttpClient().execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String retryAfter = getRetryAfter(response);
+                permit.release(statusCode, retryAfter);
+                try {
+                    String responseString = EntityUtils.toString(response.getEntity(), "UTF-8");
+                    result.complete(handleResponse(statusCode, responseString, retryAfter));
+                    breaker.record(false, System.currentTimeMillis() - startTime);
+                } catch (Exception e) {
+                    breaker.record(GeminiCircuitBreaker.isFailure(e), System.currentTimeMillis() - startTime);
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                permit.release(-1, null);
+                breaker.record(true, System.currentTimeMillis() - startTime);
+                LogUtil.error("GeminiService", e, "Async API call failed: " + e.getMessage());
+                result.completeExceptionally(e instanceof IOException ? e
+                        : new IOException("Async API call failed: " + e.getMessage(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                permit.release(-1, null);
+                breaker.releasePermission();
+                if (deadline.remainingMs() == 0) {
+                    LogUtil.warn("GeminiService", "Async API call aborted at the caller's deadline");
+                    result.completeExceptionally(new DeadlineExceededException());
+                } else {
+                    result.cancel(false);
+                }
+            }
+        });
+
+        ScheduledFuture<?> abort = scheduleAbort(() -> call.cancel(true), deadline);
+        if (abort != null) {
+            result.whenComplete((text, error) -> abort.cancel(false));
+        }
+    }
+
+    /**
+     * Generate content with streamGenerateContent, delivering each text chunk to
+     * the listener as soon as it arrives. Returns the full concatenated text.
+     */
+    public String streamGenerateContent(String model, String prompt, Map<String, Object> parameters,
+            StreamListener listener) throws IOException {
+        return streamGenerateContent(model, prompt, parameters, listener, Deadline.none());
+    }
+
+    /**
+     * Stream content; the deadline bounds the whole call, from the wait for a slot to the last chunk
+     */
+    public String streamGenerateContent(String model, String prompt, Map<String, Object> parameters,
+            StreamListener listener, Deadline deadline) throws IOException {
+        LogUtil.info("GeminiService", "Streaming content with model: " + model);
+
+        HttpPost post = buildRequest(model, prompt, parameters, true);
+        post.setHeader("Accept", "text/event-stream");
+
+        deadline.check();
+        GeminiCircuitBreaker breaker = GeminiCircuitBreaker.getInstance();
+        breaker.acquirePermission();
+        GeminiRateLimiter.Permit permit = acquireRateLimit(model, prompt, parameters, breaker, deadline);
+        applyDeadline(post, deadline);
+        int statusCode = -1;
+        String retryAfter = null;
+        Exception failure = null;
+        long startTime = System.currentTimeMillis();
+        long firstChunkMillis = -1;
+        boolean listenerFailed = false;
+        ScheduledFuture<?> abort = scheduleAbort(post::abort, deadline);
+
+        try (CloseableHttpResponse response = getHttpClient().execute(post)) {
+            statusCode = response.getStatusLine().getStatusCode();
+            retryAfter = getRetryAfter(response);
+            HttpEntity entity = response.getEntity();
+
+            if (statusCode != 200) {
+                // Error responses are plain JSON, not an event stream
+                return handleResponse(statusCode, entity != null ? EntityUtils.toString(entity, "UTF-8") : "", retryAfter);
+            }
+
+            StringBuilder fullText = new StringBuilder();
+            int chunkCount = 0;
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Server-Sent Events: each payload line is "data: {json}", events separated by blank lines
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+
+                    String chunk = extractChunkText(line.substring(5).trim());
+                    if (chunk != null && !chunk.isEmpty()) {
+                        if (firstChunkMillis < 0) {
+                            firstChunkMillis = System.currentTimeMillis() - startTime;
+                        }
+                        fullText.append(chunk);
+                        chunkCount++;
+                        if (listener != null) {
+                            try {
+                                listener.onChunk(chunk);
+                            } catch (IOException | RuntimeException e) {
+                                // The client went away; that says nothing about the Gemini API
+                                listenerFailed = true;
+                                throw e;
+                            }
+                        }
+                    }
+                }
+            }
+
+            LogUtil.info("GeminiService", "Streaming completed: " + chunkCount + " chunks, "
+                    + fullText.length() + " characters");
+            return fullText.toString();
+
+        } catch (IOException e) {
+            if (!listenerFailed && abortedByDeadline(abort)) {
+                failure = new DeadlineExceededException();
+                LogUtil.warn("GeminiService", "Streaming API call aborted at the caller's deadline");
+                throw (DeadlineExceededException) failure;
+            }
+            failure = e;
+            if (listenerFailed) {
+                LogUtil.warn("GeminiService", "Streaming client disconnected: " + e.getMessage());
+            } else {
+                LogUtil.error("GeminiService", e, "IOException during streaming API call: " + e.getMessage());
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            permit.release(statusCode, retryAfter);
+            // Only time to the first chunk counts towards slow calls; long streams are expected
+            breaker.record(failure != null && !listenerFailed && GeminiCircuitBreaker.isFailure(failure),
+                    firstChunkMillis >= 0 ? firstChunkMillis : System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Take a rate-limit permit, handing back the breaker permission if none is granted
+     */
+    private GeminiRateLimiter.Permit acquireRateLimit(String model, String prompt, Map<String, Object> parameters,
+            GeminiCircuitBreaker breaker, Deadline deadline) throws IOException {
+        try {
+            return GeminiRateLimiter.forKey(apiKey, model)
+                    .acquire(GeminiRateLimiter.estimateTokens(prompt, parameters), deadline.remainingMs());
+        } catch (IOException e) {
+            breaker.releasePermission();
+            throw e;
+        }
+    }
+
+    /**
+     * Run abort when the deadline passes, so a response that keeps trickling bytes cannot
+     * outlive it (timeouts only bound each read). Returns null for calls without a deadline.
+     */
+    private static ScheduledFuture<?> scheduleAbort(Runnable abort, Deadline deadline) {
+        long remaining = deadline.remainingMs();
+        if (remaining == Long.MAX_VALUE) {
+            return null;
+        }
+        return getDeadlineTimer().schedule(abort, remaining, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean abortedByDeadline(ScheduledFuture<?> abort) {
+        return abort != null && abort.isDone() && !abort.isCancelled();
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getDeadlineTimer() {
+        if (deadlineTimer == null) {
+            deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "gemini-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            deadlineTimer.setRemoveOnCancelPolicy(true);
+        }
+        return deadlineTimer;
+    }
+
+    /**
+     * Shrink the request's timeouts to the time left before the deadline
+     */
+    private static void applyDeadline(HttpPost post, Deadline deadline) {
+        long remaining = deadline.remainingMs();
+        if (remaining < SOCKET_TIMEOUT_MS) {
+            int timeout = (int) Math.max(1, remaining);
+            post.setConfig(RequestConfig.copy(DEFAULT_REQUEST_CONFIG)
+                    .setConnectTimeout(Math.min(CONNECT_TIMEOUT_MS, timeout))
+                    .setConnectionRequestTimeout(Math.min(CONNECTION_REQUEST_TIMEOUT_MS, timeout))
+                    .setSocketTimeout(timeout)
+                    .build());
+        }
+    }
+
+    /**
+     * Value of the Retry-After header, if the server sent one
+     */
+    private static String getRetryAfter(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Extract the text of a single streamed response chunk
+     */
+    private String extractChunkText(String json) {
+        if (json.isEmpty()) {
+            return null;
+        }
+
+        JsonObject chunkJson = gson.fromJson(json, JsonObject.class);
+        if (chunkJson.has("error")) {
+            JsonObject error = chunkJson.getAsJsonObject("error");
+            throw new RuntimeException("API stream error: "
+                    + (error.has("message") ? error.get("message").getAsString() : "Unknown error"));
+        }
+        if (!chunkJson.has("candidates")) {
+            return null;
+        }
+
+        JsonArray candidates = chunkJson.getAsJsonArray("candidates");
+        if (candidates.size() == 0 || !candidates.get(0).getAsJsonObject().has("content")) {
+            return null;
+        }
+
+        JsonObject content = candidates.get(0).getAsJsonObject().getAsJsonObject("content");
+        if (!content.has("parts")) {
+            return null;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (JsonElement part : content.getAsJsonArray("parts")) {
+            JsonObject partObject = part.getAsJsonObject();
+            if (partObject.has("text")) {
+                text.append(partObject.get("text").getAsString());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Build a generateContent (or streamGenerateContent) HTTP request
+     */
+    private HttpPost buildRequest(String model, String prompt, Map<String, Object> parameters, boolean stream) {
+        String url = baseUrl + model + (stream ? ":streamGenerateContent?alt=sse&key=" : ":generateContent?key=")
+                + apiKey;
         LogUtil.info("GeminiService", "API URL: " + url);
 
-        // Build request body
+        String requestJson = gson.toJson(buildRequestBody(prompt, parameters));
+        LogUtil.info("GeminiService", "Request body: " + requestJson);
+
+        HttpPost post = new HttpPost(url);
+        post.setHeader("Content-Type", "application/json");
+        post.setEntity(new StringEntity(requestJson, "UTF-8"));
+        return post;
+    }
+
+    /**
+     * Build the JSON request body with generation config and prompt
+     */
+    private JsonObject buildRequestBody(String prompt, Map<String, Object> parameters) {
         JsonObject requestBody = new JsonObject();
 
         // Add generation config
@@ -71,39 +523,132 @@ public class GeminiService {
         contents.add(content);
         requestBody.add("contents", contents);
 
-        LogUtil.info("GeminiService", "Request body: " + gson.toJson(requestBody));
+        return requestBody;
+    }
 
-        // Make HTTP request
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpPost post = new HttpPost(url);
-            post.setHeader("Content-Type", "application/json");
-            post.setEntity(new StringEntity(gson.toJson(requestBody), "UTF-8"));
+    /**
+     * Turn an HTTP status and body into generated text, or throw on API failure
+     */
+    private String handleResponse(int statusCode, String responseString, String retryAfter) {
+        LogUtil.info("GeminiService", "Response status: " + statusCode);
+        LogUtil.info("GeminiService", "Response body: " + responseString);
 
-            try (CloseableHttpResponse response = client.execute(post)) {
-                HttpEntity entity = response.getEntity();
-                String responseString = EntityUtils.toString(entity, "UTF-8");
+        if (statusCode == 200) {
+            String parsedResponse = parseResponse(responseString);
+            LogUtil.info("GeminiService", "Parsed response: "
+                    + parsedResponse.substring(0, Math.min(100, parsedResponse.length())) + "...");
+            return parsedResponse;
+        } else {
+            LogUtil.error("GeminiService", null,
+                    "API call failed with status " + statusCode + ": " + responseString);
+            throw new ApiException(statusCode, "API call failed (HTTP " + statusCode + "): " + responseString,
+                    ApiException.parseRetryAfter(retryAfter));
+        }
+    }
 
-                int statusCode = response.getStatusLine().getStatusCode();
-                LogUtil.info("GeminiService", "Response status: " + statusCode);
-                LogUtil.info("GeminiService", "Response body: " + responseString);
-
-                if (statusCode == 200) {
-                    String parsedResponse = parseResponse(responseString);
-                    LogUtil.info("GeminiService", "Parsed response: "
-                            + parsedResponse.substring(0, Math.min(100, parsedResponse.length())) + "...");
-                    return parsedResponse;
-                } else {
-                    LogUtil.error("GeminiService", null,
-                            "API call failed with status " + statusCode + ": " + responseString);
-                    throw new RuntimeException("API call failed (HTTP " + statusCode + "): " + responseString);
-                }
+    /**
+     * Get the shared pooled HTTP client, creating it on first use
+     */
+    static synchronized CloseableHttpClient getHttpClient() {
+        if (sharedClient == null) {
+            connectionManager = new PoolingHttpClientConnectionManager(KEEP_ALIVE_MS * 2, TimeUnit.MILLISECONDS);
+            connectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
+            connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+            connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+
+            // Honour the server's Keep-Alive header but never hold a connection longer than KEEP_ALIVE_MS
+            ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+                long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+                        context);
+                return serverKeepAlive > 0 ? Math.min(serverKeepAlive, KEEP_ALIVE_MS) : KEEP_ALIVE_MS;
+            };
+
+            sharedClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy(keepAliveStrategy)
+                    .setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(IDLE_EVICT_MS, TimeUnit.MILLISECONDS)
+                    .build();
+
+            LogUtil.info("GeminiService", "Created pooled HTTP client (maxTotal=" + MAX_CONNECTIONS_TOTAL
+                    + ", maxPerRoute=" + MAX_CONNECTIONS_PER_ROUTE + ", keepAlive=" + KEEP_ALIVE_MS + "ms, connectTimeout="
+                    + CONNECT_TIMEOUT_MS + "ms, socketTimeout=" + SOCKET_TIMEOUT_MS + "ms)");
+        }
+        return sharedClient;
+    }
+
+    /**
+     * Get the shared non-blocking HTTP client, starting it on first use.
+     * A small fixed set of I/O reactor threads multiplexes every in-flight call.
+     */
+    static synchronized CloseableHttpAsyncClient getAsyncHttpClient() {
+        if (sharedAsyncClient == null || !sharedAsyncClient.isRunning()) {
+            IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                    .setIoThreadCount(ASYNC_IO_THREADS)
+                    .setSoKeepAlive(true)
+                    .build();
+
+            sharedAsyncClient = HttpAsyncClients.custom()
+                    .setDefaultIOReactorConfig(reactorConfig)
+                    .setMaxConnTotal(ASYNC_MAX_CONNECTIONS_TOTAL)
+                    .setMaxConnPerRoute(ASYNC_MAX_CONNECTIONS_PER_ROUTE)
+                    .setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG)
+                    .build();
+            sharedAsyncClient.start();
+
+            LogUtil.info("GeminiService", "Started async HTTP client (ioThreads=" + ASYNC_IO_THREADS
+                    + ", maxTotal=" + ASYNC_MAX_CONNECTIONS_TOTAL + ")");
+        }
+        return sharedAsyncClient;
+    }
+
+    /**
+     * Get connection pool statistics for monitoring
+     */
+    public static synchronized Map<String, Object> getConnectionPoolStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("initialized", connectionManager != null);
+        if (connectionManager != null) {
+            PoolStats total = connectionManager.getTotalStats();
+            stats.put("leased", total.getLeased());
+            stats.put("available", total.getAvailable());
+            stats.put("pending", total.getPending());
+            stats.put("max", total.getMax());
+        }
+        return stats;
+    }
+
+    /**
+     * Close the shared HTTP client and release all pooled connections
+     */
+    public static synchronized void shutdown() {
+        if (deadlineTimer != null) {
+            deadlineTimer.shutdownNow();
+            deadlineTimer = null;
+        }
+
+        if (sharedAsyncClient != null) {
+            try {
+                sharedAsyncClient.close();
+                LogUtil.info("GeminiService", "✅ Shared async HTTP client closed");
+            } catch (IOException e) {
+                LogUtil.warn("GeminiService", "Error closing shared async HTTP client: " + e.getMessage());
+            } finally {
+                sharedAsyncClient = null;
+            }
+        }
+
+        if (sharedClient != null) {
+            try {
+                sharedClient.close();
+                LogUtil.info("GeminiService", "✅ Shared HTTP client closed");
+            } catch (IOException e) {
+                LogUtil.warn("GeminiService", "Error closing shared HTTP client: " + e.getMessage());
+            } finally {
+                sharedClient = null;
+                connectionManager = null;
             }
-        } catch (IOException e) {
-            LogUtil.error("GeminiService", e, "IOException during API call: " + e.getMessage());
-            throw e;
-        } catch (Exception e) {
-            LogUtil.error("GeminiService", e, "Unexpected error during API call: " + e.getMessage());
-            throw new RuntimeException("Unexpected error during API call: " + e.getMessage(), e);
         }
     }
 
@@ -234,6 +779,13 @@ public class GeminiService {
         return result;
     }
 
+    /**
+     * Receives incremental text while a streamed response is generated
+     */
+    public interface StreamListener {
+        void onChunk(String text) throws IOException;
+    }
+
     /**
      * Get API key status (masked for security)
      */
@@ -251,37 +803,254 @@ public class GeminiService {
     }
 
     /**
-     * Generate content with retry mechanism
+     * Generate content with the default retry policy
+     */
+    public String generateContentWithRetry(String model, String prompt, Map<String, Object> parameters)
+            throws IOException {
+        return generateContentWithRetry(model, prompt, parameters, RetryPolicy.DEFAULT, Deadline.none());
+    }
+
+    /**
+     * Generate content with the default retry policy, stopping at the caller's deadline
+     */
+    public String generateContentWithRetry(String model, String prompt, Map<String, Object> parameters,
+            Deadline deadline) throws IOException {
+        return generateContentWithRetry(model, prompt, parameters, RetryPolicy.DEFAULT, deadline);
+    }
+
+    /**
+     * Generate content with up to maxRetries attempts using the default backoff settings
      */
     public String generateContentWithRetry(String model, String prompt, Map<String, Object> parameters, int maxRetries)
             throws IOException {
-        IOException lastException = null;
+        return generateContentWithRetry(model, prompt, parameters, RetryPolicy.DEFAULT.withMaxAttempts(maxRetries),
+                Deadline.none());
+    }
+
+    /**
+     * Generate content, retrying transient failures (network errors, HTTP 408/429/5xx)
+     * with full-jitter exponential backoff until the policy's attempt or time limit.
+     * Retries also draw from a shared budget so an outage cannot multiply traffic,
+     * and no retry is started that could not finish before the deadline.
+     */
+    public String generateContentWithRetry(String model, String prompt, Map<String, Object> parameters,
+            RetryPolicy policy, Deadline deadline) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Exception lastException = null;
 
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+        for (int attempt = 1; attempt <= policy.getMaxAttempts(); attempt++) {
             try {
-                LogUtil.info("GeminiService", "Attempt " + attempt + " of " + maxRetries);
-                return generateContent(model, prompt, parameters);
+                String result = generateContent(model, prompt, parameters, deadline);
+                RetryPolicy.recordSuccess();
+                return result;
 
-            } catch (IOException e) {
+            } catch (IOException | ApiException e) {
                 lastException = e;
-                LogUtil.warn("GeminiService", "Attempt " + attempt + " failed: " + e.getMessage());
-
-                if (attempt < maxRetries) {
-                    try {
-                        // Wait before retry (exponential backoff)
-                        long waitTime = 1000 * attempt;
-                        LogUtil.info("GeminiService", "Waiting " + waitTime + "ms before retry...");
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Interrupted during retry wait", ie);
-                    }
+                if (!RetryPolicy.isRetryable(e) || attempt == policy.getMaxAttempts()) {
+                    break;
+                }
+
+                long waitTime = policy.delayMs(attempt, e);
+                long elapsed = System.currentTimeMillis() - startTime;
+                if (elapsed + waitTime > policy.getMaxElapsedMs() || waitTime >= deadline.remainingMs()) {
+                    LogUtil.warn("GeminiService", "Retry time limit reached after " + attempt + " attempts ("
+                            + elapsed + "ms elapsed, " + deadline.remainingMs() + "ms to deadline)");
+                    break;
+                }
+                if (!RetryPolicy.tryConsumeBudget()) {
+                    LogUtil.warn("GeminiService", "Retry budget exhausted, not retrying: " + e.getMessage());
+                    break;
+                }
+
+                LogUtil.warn("GeminiService", "Attempt " + attempt + " of " + policy.getMaxAttempts() + " failed ("
+                        + e.getMessage() + "), retrying in " + waitTime + "ms");
+                try {
+                    Thread.sleep(waitTime);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted during retry wait", ie);
+                }
+            }
+        }
+
+        // Preserve the original failure type for callers
+        if (lastException instanceof ApiException) {
+            throw (ApiException) lastException;
+        }
+        throw (IOException) lastException;
+    }
+
+    /**
+     * Non-200 response from the Gemini API
+     */
+    public static class ApiException extends RuntimeException {
+        private final int statusCode;
+        private final long retryAfterMs;
+
+        public ApiException(int statusCode, String message) {
+            this(statusCode, message, -1);
+        }
+
+        public ApiException(int statusCode, String message, long retryAfterMs) {
+            super(message);
+            this.statusCode = statusCode;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Wait the server asked for in its Retry-After header, or -1 if it sent none
+         */
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+
+        /**
+         * Parse a Retry-After header given in seconds; -1 if absent or not a number
+         */
+        static long parseRetryAfter(String retryAfter) {
+            if (retryAfter != null) {
+                try {
+                    return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    // HTTP-date form is not used by the Gemini API
                 }
             }
+            return -1;
+        }
+    }
+
+    /**
+     * Retry settings: attempts, full-jitter exponential backoff and a total time limit.
+     * A budget shared by all policies allows roughly one retry per ten successful calls
+     * (plus a small reserve), which stops retry storms during an outage.
+     */
+    public static class RetryPolicy {
+        public static final RetryPolicy DEFAULT = new RetryPolicy(
+                Integer.getInteger("gemini.retry.maxAttempts", 3),
+                Long.getLong("gemini.retry.baseDelayMs", 1000L),
+                Long.getLong("gemini.retry.maxDelayMs", 30000L),
+                Long.getLong("gemini.retry.maxElapsedMs", 120000L));
+
+        // Kept in tenths of a retry so ten successes refill exactly one
+        private static final int BUDGET_MAX_TENTHS = Integer.getInteger("gemini.retry.budget", 20) * 10;
+        private static int budgetTenths = BUDGET_MAX_TENTHS;
+
+        private final int maxAttempts;
+        private final long baseDelayMs;
+        private final long maxDelayMs;
+        private final long maxElapsedMs;
+
+        public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, long maxElapsedMs) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            this.baseDelayMs = baseDelayMs;
+            this.maxDelayMs = maxDelayMs;
+            this.maxElapsedMs = maxElapsedMs;
         }
 
-        // All attempts failed
-        throw new IOException("All " + maxRetries + " attempts failed. Last error: " + lastException.getMessage(),
-                lastException);
+        public RetryPolicy withMaxAttempts(int attempts) {
+            return new RetryPolicy(attempts, baseDelayMs, maxDelayMs, maxElapsedMs);
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public long getMaxElapsedMs() {
+            return maxElapsedMs;
+        }
+
+        /**
+         * Full jitter: random wait between 0 and min(maxDelay, base * 2^(attempt-1))
+         */
+        public long backoffMs(int attempt) {
+            long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+            return (long) (ThreadLocalRandom.current().nextDouble() * cap);
+        }
+
+        /**
+         * Wait before retrying after the given failure: the server's Retry-After if it sent one,
+         * otherwise the jittered backoff
+         */
+        public long delayMs(int attempt, Exception failure) {
+            if (failure instanceof ApiException && ((ApiException) failure).getRetryAfterMs() >= 0) {
+                return ((ApiException) failure).getRetryAfterMs();
+            }
+            return backoffMs(attempt);
+        }
+
+        /**
+         * Network errors and HTTP 408, 429, 500, 502, 503, 504 are worth retrying
+         */
+        public static boolean isRetryable(Exception e) {
+            if (e instanceof ApiException) {
+                int status = ((ApiException) e).getStatusCode();
+                return status == 408 || status == 429 || status == 500 || status == 502 || status == 503
+                        || status == 504;
+            }
+            return e instanceof IOException && !(e instanceof GeminiCircuitBreaker.OpenException)
+                    && !(e instanceof DeadlineExceededException);
+        }
+
+        static synchronized void recordSuccess() {
+            budgetTenths = Math.min(BUDGET_MAX_TENTHS, budgetTenths + 1);
+        }
+
+        static synchronized boolean tryConsumeBudget() {
+            if (budgetTenths < 10) {
+                return false;
+            }
+            budgetTenths -= 10;
+            return true;
+        }
+
+        public static synchronized double getRemainingBudget() {
+            return budgetTenths / 10.0;
+        }
+    }
+
+    /**
+     * Point in time by which a caller needs an answer, e.g. the end of an HTTP request's budget
+     */
+    public static final class Deadline {
+        private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+        private final long expiresAt;
+
+        private Deadline(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        public static Deadline after(long millis) {
+            return new Deadline(System.currentTimeMillis() + millis);
+        }
+
+        public static Deadline none() {
+            return NONE;
+        }
+
+        public long remainingMs() {
+            return expiresAt == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, expiresAt - System.currentTimeMillis());
+        }
+
+        public void check() throws DeadlineExceededException {
+            if (remainingMs() == 0) {
+                throw new DeadlineExceededException();
+            }
+        }
+    }
+
+    /**
+     * The caller's deadline passed before the Gemini call could be made
+     */
+    public static class DeadlineExceededException extends IOException {
+        public static final String ERROR_CODE = "DEADLINE_EXCEEDED";
+
+        public DeadlineExceededException() {
+            super("Gemini API request deadline exceeded");
+        }
     }
-}
\ No newline at end of file
+}
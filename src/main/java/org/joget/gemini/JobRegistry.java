@@ -0,0 +1,225 @@
+package org.joget.gemini;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * In-memory registry for long-running batch jobs (grading, material evaluation)
+ * ✅ SUBMIT: Jobs run in the background and are identified by a job ID
+ * ✅ POLL: Progress and partial results are available while a job runs
+ * ✅ STREAM: Per-item results can be consumed in completion order
+ * ✅ RETENTION: Finished jobs expire after a configurable time; the oldest go first when the registry is full
+ */
+public class JobRegistry {
+
+    // Registry limits (override with -Dgemini.jobs.* system properties)
+    private static final int MAX_RUNNING_JOBS = Integer.getInteger("gemini.jobs.maxRunning", 2);
+    private static final int MAX_RETAINED_JOBS = Integer.getInteger("gemini.jobs.maxRetained", 100);
+    private static final long RETENTION_MS = Long.getLong("gemini.jobs.retentionMinutes", 60L) * 60000L;
+
+    private static final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private static ExecutorService jobExecutor;
+
+    /**
+     * Work performed by a job; report each finished item through the job
+     */
+    public interface JobTask {
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * Submit a job and start it in the background. Rejected only when MAX_RETAINED_JOBS
+     * jobs are queued or running; finished jobs make room, oldest first.
+     */
+    public static synchronized Job submit(String type, int totalItems, JobTask task) {
+        purgeExpiredJobs();
+        if (jobs.size() >= MAX_RETAINED_JOBS) {
+            evictOldestFinishedJobs(jobs.size() - MAX_RETAINED_JOBS + 1);
+        }
+        if (jobs.size() >= MAX_RETAINED_JOBS) {
+            throw new RejectedExecutionException("Too many jobs queued or running (" + jobs.size()
+                    + "), try again later");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), type, totalItems);
+        jobs.put(job.getId(), job);
+
+        getJobExecutor().execute(() -> {
+            job.markRunning();
+            try {
+                task.run(job);
+                job.markFinished(null);
+            } catch (Exception e) {
+                LogUtil.error("JobRegistry", e, "Job " + job.getId() + " failed: " + e.getMessage());
+                job.markFinished(e.getMessage());
+            }
+        });
+
+        LogUtil.info("JobRegistry", "Submitted " + type + " job " + job.getId() + " with " + totalItems + " items");
+        return job;
+    }
+
+    /**
+     * Look up a job by ID
+     */
+    public static Job getJob(String jobId) {
+        purgeExpiredJobs();
+        return jobId != null ? jobs.get(jobId) : null;
+    }
+
+    /**
+     * Drop finished jobs past their retention period
+     */
+    private static void purgeExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MS;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+
+    private static void evictOldestFinishedJobs(int count) {
+        List<Job> finished = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (job.isFinished()) {
+                finished.add(job);
+            }
+        }
+        finished.sort(Comparator.comparingLong(Job::getFinishedAt));
+        for (Job job : finished.subList(0, Math.min(count, finished.size()))) {
+            jobs.remove(job.getId());
+        }
+    }
+
+    private static synchronized ExecutorService getJobExecutor() {
+        if (jobExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            jobExecutor = Executors.newFixedThreadPool(MAX_RUNNING_JOBS, runnable -> {
+                Thread thread = new Thread(runnable, "gemini-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return jobExecutor;
+    }
+
+    /**
+     * Stop running jobs and clear the registry
+     */
+    public static synchronized void shutdown() {
+        if (jobExecutor != null) {
+            jobExecutor.shutdownNow();
+            jobExecutor = null;
+        }
+        jobs.clear();
+    }
+
+    /**
+     * A single background job with its progress and results
+     */
+    public static class Job {
+        private final String id;
+        private final String type;
+        private final int totalItems;
+        private final long createdAt = System.currentTimeMillis();
+        private final Map<Integer, Map<String, Object>> resultsByIndex = new TreeMap<>();
+        private final List<Map<String, Object>> completionOrder = new ArrayList<>();
+        private String status = "queued";
+        private String error;
+        private int successCount;
+        private int errorCount;
+        private long finishedAt;
+
+        Job(String id, String type, int totalItems) {
+            this.id = id;
+            this.type = type;
+            this.totalItems = totalItems;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Record the result for one item; "status" = "success" counts as a success
+         */
+        public synchronized void addResult(int index, Map<String, Object> result) {
+            resultsByIndex.put(index, result);
+            completionOrder.add(result);
+            if ("success".equals(result.get("status"))) {
+                successCount++;
+            } else {
+                errorCount++;
+            }
+            notifyAll();
+        }
+
+        synchronized void markRunning() {
+            status = "running";
+        }
+
+        synchronized void markFinished(String errorMessage) {
+            status = errorMessage == null ? "completed" : "failed";
+            error = errorMessage;
+            finishedAt = System.currentTimeMillis();
+            notifyAll();
+        }
+
+        public synchronized boolean isFinished() {
+            return finishedAt > 0;
+        }
+
+        synchronized long getFinishedAt() {
+            return finishedAt;
+        }
+
+        /**
+         * Wait until results beyond the first {@code delivered} are available or the
+         * job finishes, then return them in completion order
+         */
+        public synchronized List<Map<String, Object>> awaitResults(int delivered, long timeoutMs)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (completionOrder.size() <= delivered && !isFinished()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+            return new ArrayList<>(completionOrder.subList(Math.min(delivered, completionOrder.size()),
+                    completionOrder.size()));
+        }
+
+        /**
+         * Snapshot of progress; partial results are in input order
+         */
+        public synchronized Map<String, Object> toMap(boolean includeResults) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("jobId", id);
+            map.put("type", type);
+            map.put("status", status);
+            map.put("totalItems", totalItems);
+            map.put("completedItems", completionOrder.size());
+            map.put("successCount", successCount);
+            map.put("errorCount", errorCount);
+            map.put("createdAt", createdAt);
+            if (finishedAt > 0) {
+                map.put("finishedAt", finishedAt);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            if (includeResults) {
+                map.put("results", new ArrayList<>(resultsByIndex.values()));
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.joget.gemini;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Passage-level search over the text of uploaded course material files, used to ground chat answers
+ * ✅ PASSAGES: File text is split into short passages indexed with BM25 (SearchIndex)
+ * ✅ INCREMENTAL: Only new or changed materials are re-extracted; deleted ones are dropped
+ * ✅ CHANGE CHECK: A cheap COUNT/MAX(dateModified) probe notices materials saved through Joget forms
+ * ✅ RELEVANCE: Passages below a minimum BM25 score are not added to prompts
+ * ✅ BACKGROUND: Extraction runs on a single background thread, never on the chat request
+ */
+public class MaterialContentIndex {
+
+    // Retrieval settings (override with -Dgemini.retrieval.* system properties)
+    private static final boolean ENABLED = !"false".equals(System.getProperty("gemini.retrieval.enabled"));
+    private static final int TOP_K = Integer.getInteger("gemini.retrieval.topK", 5);
+    private static final int PASSAGE_CHARS = Integer.getInteger("gemini.retrieval.passageChars", 800);
+    private static final int MAX_PASSAGES_PER_FILE = Integer.getInteger("gemini.retrieval.maxPassagesPerFile", 500);
+    private static final long REFRESH_MS = Long.getLong("gemini.retrieval.refreshMs", 60000L);
+    private static final long CHANGE_CHECK_MS = Long.getLong("gemini.retrieval.changeCheckMs", 5000L);
+    private static final double MIN_SCORE = Double.parseDouble(System.getProperty("gemini.retrieval.minScore", "1.5"));
+
+    private static final SearchIndex index = new SearchIndex();
+    // passage id ("materialId#n") -> passage
+    private static final Map<String, Passage> passages = new ConcurrentHashMap<>();
+    // material id -> indexed version and its passage ids
+    private static final Map<String, IndexedMaterial> materials = new ConcurrentHashMap<>();
+
+    private static final AtomicBoolean refreshRunning = new AtomicBoolean();
+    private static volatile boolean refreshRequested = true;
+    private static volatile long lastRefresh;
+    private static volatile long lastChangeCheck;
+    // Row count and newest dateModified of the materials table at the last refresh
+    private static volatile String lastSignature;
+    private static volatile long lastRefreshDurationMs;
+    private static ExecutorService refreshExecutor;
+
+    /**
+     * A passage of material text with the material it came from
+     */
+    public static class Passage {
+        private final String materialId;
+        private final String course;
+        private final String filename;
+        private final String text;
+
+        Passage(String materialId, String course, String filename, String text) {
+            this.materialId = materialId;
+            this.course = course;
+            this.filename = filename;
+            this.text = text;
+        }
+
+        public String getMaterialId() {
+            return materialId;
+        }
+
+        public String getCourse() {
+            return course;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static class IndexedMaterial {
+        final String version;
+        final List<String> passageIds;
+
+        IndexedMaterial(String version, List<String> passageIds) {
+            this.version = version;
+            this.passageIds = passageIds;
+        }
+    }
+
+    /**
+     * Best matching passages, best first. Returns an empty list until the first
+     * background build has finished.
+     */
+    public static List<Passage> search(String query, int limit) {
+        return search(query, limit, 0);
+    }
+
+    /**
+     * Best matching passages scoring at least minScore, best first
+     */
+    public static List<Passage> search(String query, int limit, double minScore) {
+        if (!ENABLED) {
+            return new ArrayList<>();
+        }
+        refreshIfStale();
+
+        List<Passage> results = new ArrayList<>();
+        for (SearchIndex.Hit hit : index.search(query, limit)) {
+            if (hit.getScore() < minScore) {
+                break; // hits are sorted best first
+            }
+            Passage passage = passages.get(hit.getDocId());
+            if (passage != null) {
+                results.add(passage);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Top passages formatted for the AI prompt, or null when no passage scores at least
+     * MIN_SCORE (the caller then falls back to material summaries)
+     */
+    public static String getRelevantPassages(String query) {
+        List<Passage> results = search(query, TOP_K, MIN_SCORE);
+        if (results.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder context = new StringBuilder();
+        int number = 1;
+        for (Passage passage : results) {
+            context.append(number++).append(". ");
+            if (passage.getCourse() != null) {
+                context.append("Course: ").append(passage.getCourse()).append(" | ");
+            }
+            context.append("Material: ").append(passage.getFilename()).append("\n");
+            context.append("   \"").append(passage.getText()).append("\"\n\n");
+        }
+        return context.toString();
+    }
+
+    /**
+     * Pick up material changes on the next search (call after writing to the materials table)
+     */
+    public static void requestRefresh() {
+        refreshRequested = true;
+    }
+
+    private static void refreshIfStale() {
+        long now = System.currentTimeMillis();
+        boolean full = refreshRequested || now - lastRefresh >= REFRESH_MS;
+        if (!full && now - lastChangeCheck < CHANGE_CHECK_MS) {
+            return;
+        }
+        if (refreshRunning.compareAndSet(false, true)) {
+            lastChangeCheck = now;
+            if (full) {
+                refreshRequested = false;
+            }
+            try {
+                Runnable task = full ? MaterialContentIndex::refresh : MaterialContentIndex::checkForChanges;
+                getRefreshExecutor().execute(task);
+            } catch (RuntimeException e) {
+                refreshRunning.set(false);
+                LogUtil.warn("MaterialContentIndex", "Could not schedule index refresh: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Materials are saved through Joget forms, outside this plugin, so writes are
+     * detected here: when the row count or newest dateModified moves, every cache
+     * derived from the materials table is invalidated and the index refreshed.
+     */
+    private static void checkForChanges() {
+        String signature;
+        try {
+            signature = materialsSignature();
+        } catch (Exception e) {
+            LogUtil.warn("MaterialContentIndex", "Material change check failed: " + e.getMessage());
+            refreshRunning.set(false);
+            return;
+        }
+        if (lastSignature != null && signature.equals(lastSignature)) {
+            refreshRunning.set(false);
+            return;
+        }
+        // Also refreshes TableSearchIndex.MATERIALS and the summary cache
+        DatabaseService.invalidateSummaries("materials");
+        refreshRequested = false;
+        refresh();
+    }
+
+    private static String materialsSignature() throws java.sql.SQLException {
+        List<String> rows = DatabaseService.query(
+                "SELECT COUNT(*) AS total, MAX(dateModified) AS newest FROM app_fd_materials",
+                (rs, rowNum) -> rs.getObject("total") + "|" + rs.getObject("newest"));
+        return rows.isEmpty() ? "null|null" : rows.get(0);
+    }
+
+    /**
+     * Compare the materials table with the index and (re-)extract what changed
+     */
+    private static void refresh() {
+        long startTime = System.currentTimeMillis();
+        int changed = 0;
+        try {
+            lastSignature = materialsSignature();
+            Map<String, String[]> current = new HashMap<>();
+            DatabaseService.streamQuery(
+                    "SELECT id, dateModified, c_select_course, c_course_fileupload FROM app_fd_materials",
+                    (rs, rowNum) -> {
+                        current.put(rs.getString("id"), new String[] {
+                                rs.getString("c_select_course"),
+                                rs.getString("c_course_fileupload"),
+                                String.valueOf(rs.getTimestamp("dateModified")) });
+                        return true;
+                    });
+
+            for (String materialId : new ArrayList<>(materials.keySet())) {
+                if (!current.containsKey(materialId)) {
+                    removeMaterial(materialId);
+                    changed++;
+                }
+            }
+
+            for (Map.Entry<String, String[]> entry : current.entrySet()) {
+                String[] row = entry.getValue();
+                String version = row[1] + "|" + row[2];
+                IndexedMaterial indexed = materials.get(entry.getKey());
+                if (indexed == null || !indexed.version.equals(version)) {
+                    indexMaterial(entry.getKey(), row[0], row[1], version);
+                    changed++;
+                }
+            }
+
+            if (changed > 0) {
+                LogUtil.info("MaterialContentIndex", "Indexed " + changed + " changed materials; " + passages.size()
+                        + " passages from " + materials.size() + " materials in "
+                        + (System.currentTimeMillis() - startTime) + "ms");
+            }
+        } catch (Exception e) {
+            LogUtil.error("MaterialContentIndex", e, "Material index refresh failed: " + e.getMessage());
+        } finally {
+            lastRefresh = System.currentTimeMillis();
+            lastRefreshDurationMs = lastRefresh - startTime;
+            refreshRunning.set(false);
+        }
+    }
+
+    private static void indexMaterial(String materialId, String course, String fileUpload, String version) {
+        List<String> passageIds = new ArrayList<>();
+        if (fileUpload != null) {
+            // Joget stores multiple uploaded files separated by ';'
+            for (String filename : fileUpload.split(";")) {
+                filename = filename.trim();
+                if (filename.isEmpty()) {
+                    continue;
+                }
+
+                String text;
+                try {
+                    text = MaterialEvaluationService.extractMaterialText(filename, materialId);
+                } catch (Exception e) {
+                    LogUtil.warn("MaterialContentIndex", "Could not extract " + filename + ": " + e.getMessage());
+                    continue;
+                }
+                if (text == null) {
+                    continue;
+                }
+
+                List<String> chunks = splitPassages(text);
+                for (int i = 0; i < chunks.size() && i < MAX_PASSAGES_PER_FILE; i++) {
+                    String passageId = materialId + "#" + passageIds.size();
+                    passageIds.add(passageId);
+                    passages.put(passageId, new Passage(materialId, course, filename, chunks.get(i)));
+                    // Course and file name are indexed with every passage so they match too
+                    index.put(passageId, (course != null ? course : "") + " " + filename + " " + chunks.get(i));
+                }
+            }
+        }
+
+        IndexedMaterial previous = materials.put(materialId, new IndexedMaterial(version, passageIds));
+        if (previous != null) {
+            // Drop passages left over from a longer previous version
+            for (String passageId : previous.passageIds) {
+                if (!passageIds.contains(passageId)) {
+                    passages.remove(passageId);
+                    index.remove(passageId);
+                }
+            }
+        }
+    }
+
+    private static void removeMaterial(String materialId) {
+        IndexedMaterial removed = materials.remove(materialId);
+        if (removed != null) {
+            for (String passageId : removed.passageIds) {
+                passages.remove(passageId);
+                index.remove(passageId);
+            }
+        }
+    }
+
+    /**
+     * Split text into passages of about PASSAGE_CHARS, breaking at paragraph and then word boundaries
+     */
+    static List<String> splitPassages(String text) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String paragraph : text.split("\\n\\s*\\n")) {
+            String normalized = paragraph.trim().replaceAll("\\s+", " ");
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            if (current.length() > 0 && current.length() + normalized.length() + 1 > PASSAGE_CHARS) {
+                result.add(current.toString());
+                current.setLength(0);
+            }
+            while (normalized.length() > PASSAGE_CHARS) {
+                int cut = normalized.lastIndexOf(' ', PASSAGE_CHARS);
+                if (cut <= 0) {
+                    cut = PASSAGE_CHARS;
+                }
+                result.add(normalized.substring(0, cut).trim());
+                normalized = normalized.substring(cut).trim();
+            }
+            if (current.length() > 0) {
+                current.append(' ');
+            }
+            current.append(normalized);
+        }
+        if (current.length() > 0) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+
+    private static synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gemini-material-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Index state for monitoring
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("materials", materials.size());
+        stats.put("passages", passages.size());
+        stats.put("terms", index.termCount());
+        stats.put("refreshing", refreshRunning.get());
+        stats.put("lastRefresh", lastRefresh);
+        stats.put("lastRefreshDurationMs", lastRefreshDurationMs);
+        stats.put("lastChangeCheck", lastChangeCheck);
+        stats.put("minScore", MIN_SCORE);
+        return stats;
+    }
+
+    /**
+     * Stop the background refresh thread and drop the index
+     */
+    public static synchronized void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        refreshRunning.set(false);
+        refreshRequested = true;
+        lastRefresh = 0;
+        lastChangeCheck = 0;
+        lastSignature = null;
+        materials.clear();
+        passages.clear();
+        index.clear();
+    }
+}
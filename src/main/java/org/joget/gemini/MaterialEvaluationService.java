@@ -6,10 +6,6 @@ import java.sql.*;
 import java.util.*;
 import java.util.Date;
 import java.text.SimpleDateFormat;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.joget.commons.util.LogUtil;
 import com.google.gson.Gson;
 
@@ -23,7 +19,8 @@ import com.google.gson.Gson;
  */
 public class MaterialEvaluationService {
 
-    private static final String UPLOAD_PATH = "wflow/app_formuploads/"; // Default Joget upload path
+    // Time budget per material, covering file extraction, Gemini calls and retries
+    private static final long EVALUATION_DEADLINE_MS = Long.getLong("gemini.evaluation.deadlineMs", 180000L);
     private final GeminiService geminiService;
     private final Gson gson;
 
@@ -48,6 +45,7 @@ public class MaterialEvaluationService {
             String filename, String directFileContent, boolean isPreUpload) throws Exception {
         LogUtil.info("MaterialEvaluationService", "Starting material evaluation for: " + filename +
                 (isPreUpload ? " (pre-upload)" : " (post-upload)"));
+        GeminiService.Deadline deadline = GeminiService.Deadline.after(EVALUATION_DEADLINE_MS);
 
         // 1. Get file content - either from direct content or file extraction
         String fileContent = "";
@@ -76,7 +74,8 @@ public class MaterialEvaluationService {
         params.put("temperature", 0.2); // Lower temperature for consistent evaluation
         params.put("maxOutputTokens", 2000); // Increased for detailed feedback
 
-        String aiResponse = geminiService.generateContent("gemini-1.5-flash", evaluationPrompt, params);
+        String aiResponse = geminiService.generateContentWithRetry("gemini-1.5-flash", evaluationPrompt, params,
+                deadline);
 
         // 5. Parse AI response to extract evaluation results
         EvaluationResult result = parseEvaluationResponse(aiResponse, course, filename);
@@ -92,56 +91,16 @@ public class MaterialEvaluationService {
      */
     private String extractFileContent(String filename, String materialId) {
         try {
-            // Enhanced path detection for material uploads
-            String[] possiblePaths = {
-                    // Primary paths with material ID subdirectory
-                    UPLOAD_PATH + "materials/" + materialId + "/" + filename,
-                    "./wflow/app_formuploads/materials/" + materialId + "/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/materials/" + materialId + "/" + filename,
-
-                    // Alternative paths
-                    UPLOAD_PATH + materialId + "/" + filename,
-                    "./wflow/app_formuploads/" + materialId + "/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/" + materialId + "/" + filename,
-
-                    // Fallback paths
-                    UPLOAD_PATH + filename,
-                    "uploads/" + filename,
-                    "../uploads/" + filename,
-                    "./wflow/app_formuploads/" + filename,
-                    System.getProperty("user.dir") + "/wflow/app_formuploads/" + filename
-            };
-
-            Path filePath = null;
-            for (String pathStr : possiblePaths) {
-                Path testPath = Paths.get(pathStr);
-                LogUtil.info("MaterialEvaluationService", "Checking path: " + testPath.toString());
-                if (Files.exists(testPath)) {
-                    filePath = testPath;
-                    LogUtil.info("MaterialEvaluationService", "✅ Found file at: " + testPath.toString());
-                    break;
-                }
-            }
-
+            Path filePath = DocumentExtractor.findUpload(filename, materialId, "materials");
             if (filePath == null) {
                 LogUtil.warn("MaterialEvaluationService", "File not found: " + filename);
                 return "File not found: " + filename + ". Content evaluation will be based on description only.";
             }
+            return DocumentExtractor.extract(filePath, filename);
 
-            String extension = getFileExtension(filename).toLowerCase();
-
-            switch (extension) {
-                case "pdf":
-                    return extractPDFContent(filePath);
-                case "docx":
-                    return extractDOCXContent(filePath);
-                case "txt":
-                    return extractTXTContent(filePath);
-                default:
-                    LogUtil.warn("MaterialEvaluationService", "Unsupported file type: " + extension);
-                    return "Unsupported file type: " + extension + ". Please use PDF, DOCX, or TXT files.";
-            }
-
+        } catch (DocumentExtractor.UnsupportedFormatException e) {
+            LogUtil.warn("MaterialEvaluationService", "Unsupported file type: " + e.getExtension());
+            return e.getMessage();
         } catch (Exception e) {
             LogUtil.error("MaterialEvaluationService", e, "Error extracting file content: " + e.getMessage());
             return "Error reading file: " + e.getMessage();
@@ -149,43 +108,21 @@ public class MaterialEvaluationService {
     }
 
     /**
-     * Extract content from PDF files
+     * Extract the text of an uploaded material file, or null when the file is
+     * missing or of an unsupported type (used by the chat retrieval index)
      */
-    private String extractPDFContent(Path filePath) throws IOException {
-        try (PDDocument document = PDDocument.load(filePath.toFile())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String content = stripper.getText(document);
-            LogUtil.info("MaterialEvaluationService", "Extracted PDF content: " + content.length() + " characters");
-            return content;
+    static String extractMaterialText(String filename, String materialId) throws IOException {
+        Path filePath = DocumentExtractor.findUpload(filename, materialId, "materials");
+        if (filePath == null) {
+            return null;
         }
-    }
-
-    /**
-     * Extract content from DOCX files
-     */
-    private String extractDOCXContent(Path filePath) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(Files.newInputStream(filePath))) {
-            StringBuilder content = new StringBuilder();
-
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                content.append(paragraph.getText()).append("\n");
-            }
-
-            String result = content.toString();
-            LogUtil.info("MaterialEvaluationService", "Extracted DOCX content: " + result.length() + " characters");
-            return result;
+        try {
+            return DocumentExtractor.extract(filePath, filename);
+        } catch (DocumentExtractor.UnsupportedFormatException e) {
+            return null;
         }
     }
 
-    /**
-     * Extract content from TXT files
-     */
-    private String extractTXTContent(Path filePath) throws IOException {
-        String content = new String(Files.readAllBytes(filePath), "UTF-8");
-        LogUtil.info("MaterialEvaluationService", "Extracted TXT content: " + content.length() + " characters");
-        return content;
-    }
-
     /**
      * Get context about existing course materials
      */
@@ -415,17 +352,6 @@ public class MaterialEvaluationService {
         return null;
     }
 
-    /**
-     * Get file extension
-     */
-    private String getFileExtension(String filename) {
-        int lastDotIndex = filename.lastIndexOf('.');
-        if (lastDotIndex > 0 && lastDotIndex < filename.length() - 1) {
-            return filename.substring(lastDotIndex + 1);
-        }
-        return "";
-    }
-
     /**
      * EvaluationResult class for material assessment
      */
@@ -0,0 +1,247 @@
+package org.joget.gemini;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index with BM25 ranking
+ * ✅ TOKENIZE: Lower-cased word tokens with common stop words removed
+ * ✅ RANK: BM25 scoring over multi-term queries (any term may match)
+ * ✅ PREFIX: Query terms also match longer words ("network" finds "networking")
+ * ✅ INCREMENTAL: Documents can be added, replaced and removed at any time
+ */
+public class SearchIndex {
+
+    // Standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Prefix matches count less than exact matches and are capped per query term
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 20;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it", "its",
+            "of", "on", "or", "that", "the", "this", "to", "was", "were", "will", "with"));
+
+    // term -> (docId -> term frequency); sorted for prefix lookups
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    // docId -> (term -> frequency), kept so a document can be removed or replaced
+    private final Map<String, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<String, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Ranked search result
+     */
+    public static class Hit {
+        private final String docId;
+        private final double score;
+
+        Hit(String docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        public String getDocId() {
+            return docId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Split text into lower-cased index terms
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Add or replace a document
+     */
+    public void put(String docId, String text) {
+        Map<String, Integer> termCounts = new HashMap<>();
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            termCounts.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+            if (termCounts.isEmpty()) {
+                return;
+            }
+            documents.put(docId, termCounts);
+            documentLengths.put(docId, tokens.size());
+            totalLength += tokens.size();
+            for (Map.Entry<String, Integer> entry : termCounts.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(docId, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document if present
+     */
+    public void remove(String docId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(String docId) {
+        Map<String, Integer> termCounts = documents.remove(docId);
+        if (termCounts == null) {
+            return;
+        }
+        totalLength -= documentLengths.remove(docId);
+        for (String term : termCounts.keySet()) {
+            Map<String, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(docId);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every document whose id is not in the given set; returns how many were removed
+     */
+    public int retainAll(Set<String> docIds) {
+        lock.writeLock().lock();
+        try {
+            List<String> removed = new ArrayList<>();
+            for (String docId : documents.keySet()) {
+                if (!docIds.contains(docId)) {
+                    removed.add(docId);
+                }
+            }
+            for (String docId : removed) {
+                removeLocked(docId);
+            }
+            return removed.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every document
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return up to limit documents matching any query term, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = scoreLocked(query);
+            List<Hit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                hits.add(new Hit(entry.getKey(), entry.getValue()));
+            }
+            hits.sort((a, b) -> Double.compare(b.score, a.score));
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of documents matching any query term
+     */
+    public int countMatches(String query) {
+        lock.readLock().lock();
+        try {
+            return scoreLocked(query).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Double> scoreLocked(String query) {
+        Map<String, Double> scores = new HashMap<>();
+        int documentCount = documents.size();
+        if (documentCount == 0) {
+            return scores;
+        }
+        double averageLength = (double) totalLength / documentCount;
+
+        for (String queryTerm : new LinkedHashSet<>(tokenize(query))) {
+            int expansions = 0;
+            for (Map.Entry<String, Map<String, Integer>> entry : postings
+                    .subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                boolean exact = entry.getKey().equals(queryTerm);
+                if (!exact && ++expansions > MAX_PREFIX_EXPANSIONS) {
+                    continue;
+                }
+                double weight = exact ? 1.0 : PREFIX_WEIGHT;
+
+                Map<String, Integer> docs = entry.getValue();
+                double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+                for (Map.Entry<String, Integer> doc : docs.entrySet()) {
+                    int tf = doc.getValue();
+                    double norm = K1 * (1 - B + B * documentLengths.get(doc.getKey()) / averageLength);
+                    scores.merge(doc.getKey(), weight * idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct indexed terms
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
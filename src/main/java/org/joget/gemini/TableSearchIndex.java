@@ -0,0 +1,238 @@
+package org.joget.gemini;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.joget.commons.util.LogUtil;
+
+/**
+ * Keyword search over a Joget form table, backed by an in-memory SearchIndex
+ * ✅ BUILD: Full index built by streaming the table once, then swapped in
+ * ✅ REFRESH: Rows changed since the last sync (dateModified) are re-indexed; deleted ids are dropped
+ * ✅ REBUILD: Periodic full rebuild compacts the index
+ * ✅ BACKGROUND: Builds and refreshes run on a background thread; searches never wait for them
+ *
+ * The refresh query filters on dateModified, so large tables need an index on that
+ * column (see "Search index" under "Database Schema" in the Readme).
+ */
+public class TableSearchIndex {
+
+    // Index freshness (override with -Dgemini.search.* system properties)
+    private static final long REFRESH_MS = Long.getLong("gemini.search.refreshMs", 30000L);
+    private static final long REBUILD_MS = Long.getLong("gemini.search.rebuildMinutes", 30L) * 60000L;
+
+    public static final TableSearchIndex MATERIALS = new TableSearchIndex("app_fd_materials",
+            "c_select_course", "c_course_information", "c_course_fileupload");
+    public static final TableSearchIndex ASSIGNMENTS = new TableSearchIndex("app_fd_assignments",
+            "c_assignment_title", "c_course", "c_assignment_remarks_teacher", "c_field3");
+
+    private static ExecutorService refreshExecutor;
+
+    private final String table;
+    private final String[] columns;
+    private volatile SearchIndex index = new SearchIndex();
+
+    // Written only by the refresh thread
+    private volatile long lastRebuild;
+    private volatile long lastRefresh;
+    private volatile long lastRefreshDurationMs;
+    private Timestamp lastModifiedSeen;
+    private volatile boolean refreshRequested;
+    private final AtomicBoolean refreshRunning = new AtomicBoolean();
+
+    public TableSearchIndex(String table, String... columns) {
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /**
+     * Whether the first build has finished. Until then callers should use another
+     * search path; the build is started by this call if needed.
+     */
+    public boolean isReady() {
+        refreshIfStale();
+        return lastRebuild > 0;
+    }
+
+    /**
+     * IDs of the best matching rows, best first, from the current snapshot
+     */
+    public List<String> search(String query, int limit) {
+        refreshIfStale();
+        List<String> ids = new ArrayList<>();
+        for (SearchIndex.Hit hit : index.search(query, limit)) {
+            ids.add(hit.getDocId());
+        }
+        return ids;
+    }
+
+    /**
+     * Number of rows matching any query term
+     */
+    public int countMatches(String query) {
+        refreshIfStale();
+        return index.countMatches(query);
+    }
+
+    /**
+     * Re-index changed rows in the background (call after writing to the table)
+     */
+    public void requestRefresh() {
+        refreshRequested = true;
+        refreshIfStale();
+    }
+
+    private void refreshIfStale() {
+        // refresh() decides between a full rebuild and a changed-rows refresh
+        boolean due = refreshRequested || System.currentTimeMillis() - lastRefresh >= REFRESH_MS;
+        if (!due || !refreshRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getRefreshExecutor().execute(this::refresh);
+        } catch (RuntimeException e) {
+            refreshRunning.set(false);
+            LogUtil.warn("TableSearchIndex", "Could not schedule refresh of " + table + ": " + e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (lastRebuild == 0 || startTime - lastRebuild >= REBUILD_MS) {
+                rebuild();
+            } else {
+                refreshChanged();
+            }
+        } catch (SQLException e) {
+            LogUtil.error("TableSearchIndex", e, "Search index refresh of " + table + " failed: " + e.getMessage());
+            // Retry on the next refresh interval rather than on every search
+            lastRefresh = System.currentTimeMillis();
+        } finally {
+            lastRefreshDurationMs = System.currentTimeMillis() - startTime;
+            refreshRunning.set(false);
+        }
+    }
+
+    private void rebuild() throws SQLException {
+        long startTime = System.currentTimeMillis();
+        SearchIndex fresh = new SearchIndex();
+        Timestamp[] newest = new Timestamp[1];
+
+        refreshRequested = false;
+        DatabaseService.streamQuery("SELECT id, dateModified, " + String.join(", ", columns) + " FROM " + table,
+                (rs, rowNum) -> {
+                    fresh.put(rs.getString("id"), rowText(rs));
+                    newest[0] = later(newest[0], rs.getTimestamp("dateModified"));
+                    return true;
+                });
+
+        // Rows deleted since the last build are simply not in the new index
+        index = fresh;
+        lastModifiedSeen = newest[0];
+        lastRebuild = lastRefresh = System.currentTimeMillis();
+        LogUtil.info("TableSearchIndex", "Indexed " + fresh.size() + " rows of " + table + " ("
+                + fresh.termCount() + " terms) in " + (lastRebuild - startTime) + "ms");
+    }
+
+    private void refreshChanged() throws SQLException {
+        refreshRequested = false;
+        String sql = "SELECT id, dateModified, " + String.join(", ", columns) + " FROM " + table
+                + (lastModifiedSeen != null ? " WHERE dateModified >= ?" : "");
+        Object[] params = lastModifiedSeen != null ? new Object[] { lastModifiedSeen } : new Object[0];
+
+        SearchIndex current = index;
+        Timestamp[] newest = { lastModifiedSeen };
+        int changed = DatabaseService.streamQuery(sql, (rs, rowNum) -> {
+            current.put(rs.getString("id"), rowText(rs));
+            newest[0] = later(newest[0], rs.getTimestamp("dateModified"));
+            return true;
+        }, params);
+
+        // dateModified says nothing about deleted rows, so compare ids. The id scan runs after the
+        // changed-rows query: a row inserted in between is in the id set and can't be dropped by mistake.
+        Set<String> ids = new HashSet<>();
+        DatabaseService.streamQuery("SELECT id FROM " + table, (rs, rowNum) -> {
+            ids.add(rs.getString("id"));
+            return true;
+        });
+        int removed = current.retainAll(ids);
+
+        lastModifiedSeen = newest[0];
+        lastRefresh = System.currentTimeMillis();
+        if (changed > 0 || removed > 0) {
+            LogUtil.info("TableSearchIndex", "Re-indexed " + changed + " changed and dropped " + removed
+                    + " deleted rows of " + table);
+        }
+    }
+
+    private String rowText(java.sql.ResultSet rs) throws SQLException {
+        StringBuilder text = new StringBuilder();
+        for (String column : columns) {
+            String value = rs.getString(column);
+            if (value != null) {
+                text.append(value).append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    private static Timestamp later(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.after(a) ? b : a;
+    }
+
+    private static synchronized ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gemini-search-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Index state for monitoring
+     */
+    public Map<String, Object> getStats() {
+        SearchIndex current = index;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("table", table);
+        stats.put("ready", lastRebuild > 0);
+        stats.put("documents", current.size());
+        stats.put("terms", current.termCount());
+        stats.put("refreshing", refreshRunning.get());
+        stats.put("lastRebuild", lastRebuild);
+        stats.put("lastRefresh", lastRefresh);
+        stats.put("lastRefreshDurationMs", lastRefreshDurationMs);
+        return stats;
+    }
+
+    private void reset() {
+        index = new SearchIndex();
+        lastRebuild = 0;
+        lastRefresh = 0;
+        lastModifiedSeen = null;
+        refreshRequested = false;
+        refreshRunning.set(false);
+    }
+
+    /**
+     * Stop the background refresh thread and drop both indexes
+     */
+    public static synchronized void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        MATERIALS.reset();
+        ASSIGNMENTS.reset();
+    }
+}
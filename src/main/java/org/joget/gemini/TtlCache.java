@@ -0,0 +1,138 @@
+package org.joget.gemini;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded in-process cache with per-entry expiry
+ * ✅ LRU: Least recently used entries are evicted once the cache is full
+ * ✅ TTL: Entries expire after a fixed time so outside changes are picked up
+ * ✅ READ-THROUGH: Misses are loaded by the caller-supplied loader
+ * ✅ STATS: Hit, miss, eviction and invalidation counters for monitoring
+ */
+public class TtlCache<K, V> {
+
+    /**
+     * Loads a value on a cache miss
+     */
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    private static class CacheEntry<V> {
+        final V value;
+        final long expiresAt;
+
+        CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    // Bumped on every invalidation so loads that raced with a write are not cached
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public TtlCache(int maxEntries, long ttlMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > TtlCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached value for the key, or load, cache and return it
+     */
+    public <E extends Exception> V get(K key, Loader<V, E> loader) throws E {
+        long loadGeneration;
+        synchronized (this) {
+            V cached = getIfPresent(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        // Load outside the lock so a slow query does not block other keys
+        V value = loader.load();
+
+        synchronized (this) {
+            if (value != null && loadGeneration == generation) {
+                entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttlMs));
+            }
+        }
+        return value;
+    }
+
+    private V getIfPresent(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Store a value directly
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    /**
+     * Drop every entry whose key matches
+     */
+    public synchronized void invalidateIf(Predicate<K> matcher) {
+        generation++;
+        int before = entries.size();
+        entries.keySet().removeIf(matcher);
+        invalidations += before - entries.size();
+    }
+
+    /**
+     * Drop all entries
+     */
+    public synchronized void clear() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * Cache counters for monitoring
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long lookups = hits + misses;
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatePercent", lookups > 0 ? hits * 100 / lookups : 0);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+}
@@ -0,0 +1,71 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Chat history reads: rows still in the write-behind queue are merged in front of stored rows
+ */
+public class ChatHistoryMergeTest {
+
+    @Test
+    public void pendingRowsComeFirstNewestFirst() {
+        List<Map<String, Object>> stored = new ArrayList<>(Collections.singletonList(
+                stored(1, "old", LocalDateTime.of(2024, 3, 1, 9, 0, 0))));
+        List<Object[]> pending = Arrays.asList(
+                pending("first", Timestamp.valueOf("2024-03-01 10:00:00")),
+                pending("second", Timestamp.valueOf("2024-03-01 10:00:05")));
+
+        List<Map<String, Object>> rows = DatabaseService.withPendingRows(pending, stored);
+        assertEquals(3, rows.size());
+        assertEquals("second", rows.get(0).get("userPrompt"));
+        assertNull(rows.get(0).get("id"));
+        assertEquals("first", rows.get(1).get("userPrompt"));
+        assertEquals(1L, rows.get(2).get("id"));
+    }
+
+    @Test
+    public void rowCommittedDuringReadIsNotDuplicated() {
+        // Stored with whole seconds while the queued copy still has its milliseconds
+        List<Map<String, Object>> stored = new ArrayList<>(Collections.singletonList(
+                stored(2, "hello", LocalDateTime.of(2024, 3, 1, 10, 0, 0))));
+        List<Object[]> pending = Collections.singletonList(pending("hello", Timestamp.valueOf("2024-03-01 10:00:00.4")));
+
+        List<Map<String, Object>> rows = DatabaseService.withPendingRows(pending, stored);
+        assertEquals(1, rows.size());
+        assertEquals(2L, rows.get(0).get("id"));
+    }
+
+    @Test
+    public void sameTextAtAnotherTimeIsKept() {
+        List<Map<String, Object>> stored = new ArrayList<>(Collections.singletonList(
+                stored(3, "hello", LocalDateTime.of(2024, 3, 1, 10, 0, 0))));
+        List<Object[]> pending = Collections.singletonList(pending("hello", Timestamp.valueOf("2024-03-01 10:05:00")));
+
+        assertEquals(2, DatabaseService.withPendingRows(pending, stored).size());
+    }
+
+    private static Object[] pending(String prompt, Timestamp time) {
+        return new Object[] { "s1", prompt, "answer", "gemini-pro", time };
+    }
+
+    private static Map<String, Object> stored(long id, String prompt, LocalDateTime time) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("sessionId", "s1");
+        row.put("userPrompt", prompt);
+        row.put("aiResponse", "answer");
+        row.put("model", "gemini-pro");
+        row.put("timestamp", time);
+        return row;
+    }
+}
@@ -0,0 +1,126 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * DocxTextExtractor on small documents built in the test: list items under tracked
+ * changes, nested tables, part order and markup compatibility fallbacks
+ */
+public class DocxTextExtractorTest {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String MC = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void paragraphsAndTabs() throws Exception {
+        String text = extract(docx("word/document.xml", body(
+                paragraph("First"),
+                "<w:p><w:r><w:t>a</w:t><w:tab/><w:t>b</w:t><w:br/><w:t>c</w:t></w:r></w:p>")));
+        assertEquals("First\na\tb\nc\n", text);
+    }
+
+    @Test
+    public void listItemUnderTrackedChangeGetsOneMarker() throws Exception {
+        String tracked = "<w:p><w:pPr><w:numPr><w:ilvl w:val=\"0\"/><w:numId w:val=\"1\"/></w:numPr>"
+                + "<w:pPrChange w:id=\"1\" w:author=\"a\"><w:pPr><w:numPr><w:numId w:val=\"2\"/></w:numPr></w:pPr>"
+                + "</w:pPrChange></w:pPr><w:r><w:t>Item</w:t></w:r></w:p>";
+        // Was a list item before the change only: not a list item now
+        String formerItem = "<w:p><w:pPr><w:pPrChange w:id=\"2\" w:author=\"a\"><w:pPr><w:numPr>"
+                + "<w:numId w:val=\"2\"/></w:numPr></w:pPr></w:pPrChange></w:pPr><w:r><w:t>Plain</w:t></w:r></w:p>";
+        assertEquals("- Item\nPlain\n", extract(docx("word/document.xml", body(tracked, formerItem))));
+    }
+
+    @Test
+    public void nestedTableStaysOnOuterRow() throws Exception {
+        String inner = "<w:tbl><w:tr>" + cell("x") + cell("y") + "</w:tr></w:tbl>";
+        String outer = "<w:tbl><w:tr>" + cell("A") + "<w:tc>" + inner + paragraph("") + "</w:tc>" + cell("C")
+                + "</w:tr><w:tr>" + cell("D") + cell("E") + cell("F") + "</w:tr></w:tbl>";
+        // Inner rows, the inner table and the empty paragraph after it each end with a space
+        assertEquals("A | x | y    | C \nD | E | F \n\nAfter\n",
+                extract(docx("word/document.xml", body(outer, paragraph("After")))));
+    }
+
+    @Test
+    public void partsInReadingOrder() throws Exception {
+        Path file = docx(
+                "word/footer1.xml", part("ftr", paragraph("Footer")),
+                "word/endnotes.xml", part("endnotes", "<w:endnote>" + paragraph("Endnote") + "</w:endnote>"),
+                "word/header10.xml", part("hdr", paragraph("Header10")),
+                "word/footnotes.xml", part("footnotes", "<w:footnote>" + paragraph("Footnote") + "</w:footnote>"),
+                "word/document.xml", body(paragraph("Body")),
+                "word/header2.xml", part("hdr", paragraph("Header2")));
+        assertEquals("Header2\nHeader10\nBody\nFootnote\nEndnote\nFooter\n", extract(file));
+    }
+
+    @Test
+    public void markupCompatibilityFallbackIsSkipped() throws Exception {
+        String alternate = "<w:p><w:r><mc:AlternateContent xmlns:mc=\"" + MC + "\">"
+                + "<mc:Choice Requires=\"wps\"><w:t>Shape text</w:t></mc:Choice>"
+                + "<mc:Fallback><w:pict><w:t>Shape text</w:t></w:pict></mc:Fallback>"
+                + "</mc:AlternateContent></w:r></w:p>";
+        assertEquals("Shape text\n", extract(docx("word/document.xml", body(alternate))));
+    }
+
+    @Test
+    public void tabStopDefinitionsAreNotTabs() throws Exception {
+        String paragraph = "<w:p><w:pPr><w:tabs><w:tab w:val=\"left\" w:pos=\"720\"/></w:tabs></w:pPr>"
+                + "<w:r><w:t>Text</w:t></w:r></w:p>";
+        assertEquals("Text\n", extract(docx("word/document.xml", body(paragraph))));
+    }
+
+    @Test
+    public void stopsAtCharacterLimit() throws Exception {
+        String text = DocxTextExtractor.extract(docx("word/document.xml",
+                body(paragraph("0123456789"), paragraph("more"))), 5);
+        assertEquals("01234", text);
+    }
+
+    private static String extract(Path file) throws IOException {
+        return DocxTextExtractor.extract(file, 100000);
+    }
+
+    private static String paragraph(String text) {
+        return "<w:p><w:r><w:t>" + text + "</w:t></w:r></w:p>";
+    }
+
+    private static String cell(String text) {
+        return "<w:tc>" + paragraph(text) + "</w:tc>";
+    }
+
+    private static String body(String... blocks) {
+        return part("document", "<w:body>" + String.join("", blocks) + "</w:body>");
+    }
+
+    private static String part(String root, String content) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><w:" + root + " xmlns:w=\"" + W + "\">" + content
+                + "</w:" + root + ">";
+    }
+
+    /**
+     * Write a .docx containing the given entry name / XML pairs, in that order
+     */
+    private Path docx(String... entries) throws IOException {
+        Path file = folder.newFile().toPath();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+}
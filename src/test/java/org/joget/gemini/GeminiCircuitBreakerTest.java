@@ -0,0 +1,147 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * State changes of GeminiCircuitBreaker with its default thresholds: a window of 20 calls,
+ * at least 10 recorded, 50% failures, 30s open and 3 half-open probes
+ */
+public class GeminiCircuitBreakerTest {
+
+    private static final long OPEN_MS = 30000L;
+
+    private final AtomicLong now = new AtomicLong(1000000L);
+    private GeminiCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        breaker = new GeminiCircuitBreaker(now::get);
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() throws Exception {
+        recordCalls(9, true);
+        assertEquals(GeminiCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void opensOnFailureRate() throws Exception {
+        recordCalls(5, false);
+        recordCalls(5, true);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+        assertRejected();
+        assertEquals(1L, breaker.getStats().get("rejectedCalls"));
+    }
+
+    @Test
+    public void opensOnSlowCallRate() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(false, 30000L);
+        }
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(((String) breaker.getStats().get("lastTripReason")).startsWith("slow call rate"));
+    }
+
+    @Test
+    public void windowDropsOldestOutcomes() {
+        recordCalls(9, false);
+        recordCalls(1, true);
+        recordCalls(10, false);
+        assertEquals(5, breaker.getStats().get("failureRatePercent"));
+
+        // New failures overwrite the oldest successes until 10 of the last 20 calls failed
+        recordCalls(8, true);
+        assertEquals(GeminiCircuitBreaker.State.CLOSED, breaker.getState());
+        recordCalls(1, true);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void becomesHalfOpenAfterCooldown() throws Exception {
+        tripBreaker();
+        now.addAndGet(OPEN_MS - 1);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+        assertRejected();
+
+        now.addAndGet(1);
+        assertEquals(GeminiCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void limitsHalfOpenProbes() throws Exception {
+        tripBreaker();
+        now.addAndGet(OPEN_MS);
+        for (int i = 0; i < 3; i++) {
+            breaker.acquirePermission();
+        }
+        assertRejected();
+
+        // A released probe frees its slot
+        breaker.releasePermission();
+        breaker.acquirePermission();
+    }
+
+    @Test
+    public void closesAfterSuccessfulProbes() throws Exception {
+        tripBreaker();
+        now.addAndGet(OPEN_MS);
+        for (int i = 0; i < 3; i++) {
+            breaker.acquirePermission();
+            breaker.record(false, 10L);
+        }
+        assertEquals(GeminiCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getStats().get("recordedCalls"));
+    }
+
+    @Test
+    public void reopensOnFailedProbe() throws Exception {
+        tripBreaker();
+        now.addAndGet(OPEN_MS);
+        breaker.acquirePermission();
+        breaker.record(true, 10L);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+        assertRejected();
+    }
+
+    @Test
+    public void ignoresLateResultsWhileOpen() {
+        tripBreaker();
+        recordCalls(20, false);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void clientErrorsAreNotFailures() {
+        assertFalse(GeminiCircuitBreaker.isFailure(new GeminiService.ApiException(400, "bad request")));
+        assertTrue(GeminiCircuitBreaker.isFailure(new GeminiService.ApiException(503, "unavailable")));
+        assertTrue(GeminiCircuitBreaker.isFailure(new java.net.SocketTimeoutException()));
+        // A call cut off at the caller's deadline is a slow call, not a failure
+        assertFalse(GeminiCircuitBreaker.isFailure(new GeminiService.DeadlineExceededException()));
+    }
+
+    private void tripBreaker() {
+        recordCalls(10, true);
+        assertEquals(GeminiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void recordCalls(int count, boolean failed) {
+        for (int i = 0; i < count; i++) {
+            breaker.record(failed, 10L);
+        }
+    }
+
+    private void assertRejected() {
+        try {
+            breaker.acquirePermission();
+            fail("Expected the breaker to reject the call");
+        } catch (GeminiCircuitBreaker.OpenException expected) {
+            // fail fast
+        }
+    }
+}
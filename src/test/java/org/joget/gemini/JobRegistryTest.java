@@ -0,0 +1,73 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JobRegistry retention: finished jobs make room, queued and running jobs do not
+ */
+public class JobRegistryTest {
+
+    private static final int MAX_RETAINED = 100;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        JobRegistry.shutdown();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        JobRegistry.shutdown();
+    }
+
+    @Test
+    public void oldestFinishedJobsMakeRoom() throws Exception {
+        List<JobRegistry.Job> finished = new ArrayList<>();
+        finished.add(JobRegistry.submit("test", 0, job -> { }));
+        finished.get(0).awaitResults(0, 5000);
+        Thread.sleep(5); // finish times have millisecond resolution
+        for (int i = 1; i < MAX_RETAINED; i++) {
+            finished.add(JobRegistry.submit("test", 0, job -> { }));
+        }
+        for (JobRegistry.Job job : finished) {
+            job.awaitResults(0, 5000);
+            assertTrue(job.isFinished());
+        }
+
+        JobRegistry.Job next = JobRegistry.submit("test", 0, job -> { });
+        assertNotNull(JobRegistry.getJob(next.getId()));
+        assertNull("oldest finished job should be evicted", JobRegistry.getJob(finished.get(0).getId()));
+        assertNotNull(JobRegistry.getJob(finished.get(MAX_RETAINED - 1).getId()));
+    }
+
+    @Test
+    public void rejectsOnlyWhenFullOfUnfinishedJobs() throws Exception {
+        JobRegistry.Job done = JobRegistry.submit("test", 0, job -> { });
+        done.awaitResults(0, 5000);
+        for (int i = 0; i < MAX_RETAINED - 1; i++) {
+            JobRegistry.submit("test", 0, job -> release.await());
+        }
+
+        // The finished job makes room once...
+        JobRegistry.submit("test", 0, job -> release.await());
+        assertNull(JobRegistry.getJob(done.getId()));
+
+        // ...after that every retained job is queued or running
+        try {
+            JobRegistry.submit("test", 0, job -> release.await());
+            fail("Expected the registry to reject the job");
+        } catch (RejectedExecutionException expected) {
+            // full of unfinished jobs
+        }
+    }
+}
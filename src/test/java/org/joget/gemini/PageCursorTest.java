@@ -0,0 +1,110 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Keyset paging cursors: round trips, NULL time columns and rejected cursors
+ */
+public class PageCursorTest {
+
+    private static final String TABLE = "gemini_chat_history";
+
+    @Test
+    public void roundTripsTimestampAndNumericId() {
+        Timestamp time = Timestamp.valueOf("2024-03-01 10:15:30.5");
+        Object[] position = DatabaseService.decodeCursor(TABLE, DatabaseService.encodeCursor(TABLE, time, 42));
+        assertEquals(time, position[0]);
+        assertEquals(42L, position[1]);
+    }
+
+    @Test
+    public void roundTripsLocalDateTimeAndStringId() {
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 10, 15, 30);
+        String cursor = DatabaseService.encodeCursor("app_fd_materials", time, "a1b2-c3");
+        Object[] position = DatabaseService.decodeCursor("app_fd_materials", cursor);
+        assertEquals(Timestamp.valueOf(time), position[0]);
+        assertEquals("a1b2-c3", position[1]);
+    }
+
+    @Test
+    public void cursorIsUrlSafe() {
+        String cursor = DatabaseService.encodeCursor(TABLE, Timestamp.valueOf("2024-03-01 10:15:30"), "??>>");
+        assertTrue(cursor, cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void roundTripsNullTime() {
+        Object[] position = DatabaseService.decodeCursor(TABLE, DatabaseService.encodeCursor(TABLE, null, 7));
+        assertNull(position[0]);
+        assertEquals(7L, position[1]);
+    }
+
+    @Test
+    public void firstPageHasNoCursorCondition() {
+        List<Object> params = new ArrayList<>(Arrays.asList((Object) "s1"));
+        String sql = DatabaseService.pageSql(TABLE, "id, timestamp", "sessionId = ?", "timestamp", 20, null, params);
+        assertEquals("SELECT id, timestamp FROM gemini_chat_history WHERE (sessionId = ?) "
+                + "ORDER BY timestamp DESC, id DESC LIMIT 21", sql);
+        assertEquals(Arrays.asList((Object) "s1"), params);
+    }
+
+    @Test
+    public void pageAfterTimedRowIncludesNullTimeRows() {
+        Timestamp time = Timestamp.valueOf("2024-03-01 10:15:30");
+        List<Object> params = new ArrayList<>();
+        String sql = DatabaseService.pageSql(TABLE, "*", null, "timestamp", 10,
+                DatabaseService.encodeCursor(TABLE, time, 5), params);
+        assertTrue(sql, sql.contains("WHERE (timestamp < ? OR (timestamp = ? AND id < ?) OR timestamp IS NULL)"));
+        assertEquals(Arrays.asList((Object) time, time, 5L), params);
+    }
+
+    @Test
+    public void pageAfterNullTimeRowStaysAmongNullTimeRows() {
+        List<Object> params = new ArrayList<>();
+        String sql = DatabaseService.pageSql(TABLE, "*", null, "timestamp", 10,
+                DatabaseService.encodeCursor(TABLE, null, 5), params);
+        assertTrue(sql, sql.contains("WHERE (timestamp IS NULL AND id < ?)"));
+        assertEquals(Arrays.asList((Object) 5L), params);
+    }
+
+    @Test
+    public void rejectsCursorForAnotherTable() {
+        String cursor = DatabaseService.encodeCursor("app_fd_materials", Timestamp.valueOf("2024-03-01 10:15:30"),
+                "m1");
+        assertRejected(TABLE, cursor);
+    }
+
+    @Test
+    public void rejectsTamperedCursors() {
+        assertRejected(TABLE, "not a cursor!");
+        assertRejected(TABLE, encode(TABLE + "\n2024-03-01 10:15:30"));
+        assertRejected(TABLE, encode(TABLE + "\nyesterday\nn5"));
+        assertRejected(TABLE, encode(TABLE + "\n2024-03-01 10:15:30\nnfive"));
+        assertRejected(TABLE, encode(TABLE + "\n2024-03-01 10:15:30\nn"));
+
+        String valid = DatabaseService.encodeCursor(TABLE, Timestamp.valueOf("2024-03-01 10:15:30"), 5);
+        assertRejected(TABLE, valid.substring(0, valid.length() / 2));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertRejected(String table, String cursor) {
+        try {
+            DatabaseService.pageSql(table, "*", null, "timestamp", 10, cursor, new ArrayList<>());
+            fail("Expected cursor to be rejected: " + cursor);
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Invalid cursor", expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * GeminiService.RetryPolicy: backoff bounds, the shared retry budget, Retry-After and
+ * which failures are retried
+ */
+public class RetryPolicyTest {
+
+    private static final GeminiService.RetryPolicy FAST = new GeminiService.RetryPolicy(3, 1, 5, 10000);
+
+    @Before
+    public void refillBudget() {
+        // The budget is shared by the whole bundle; start every test from a full one
+        for (int i = 0; i < 1000; i++) {
+            GeminiService.RetryPolicy.recordSuccess();
+        }
+    }
+
+    @Test
+    public void fullJitterStaysWithinExponentialCap() {
+        GeminiService.RetryPolicy policy = new GeminiService.RetryPolicy(10, 100, 1000, 60000);
+        long[] caps = { 100, 200, 400, 800, 1000, 1000 };
+        for (int attempt = 1; attempt <= caps.length; attempt++) {
+            long max = 0;
+            for (int i = 0; i < 500; i++) {
+                long delay = policy.backoffMs(attempt);
+                assertTrue("attempt " + attempt + " delay " + delay, delay >= 0 && delay < caps[attempt - 1]);
+                max = Math.max(max, delay);
+            }
+            // Full jitter spreads over the whole range, not just near the cap
+            assertTrue(max > caps[attempt - 1] / 2);
+        }
+    }
+
+    @Test
+    public void budgetRunsOutAndRefillsFromSuccesses() {
+        assertEquals(20.0, GeminiService.RetryPolicy.getRemainingBudget(), 0.0);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(GeminiService.RetryPolicy.tryConsumeBudget());
+        }
+        assertFalse(GeminiService.RetryPolicy.tryConsumeBudget());
+
+        for (int i = 0; i < 9; i++) {
+            GeminiService.RetryPolicy.recordSuccess();
+        }
+        assertFalse(GeminiService.RetryPolicy.tryConsumeBudget());
+        GeminiService.RetryPolicy.recordSuccess();
+        assertTrue(GeminiService.RetryPolicy.tryConsumeBudget());
+        assertFalse(GeminiService.RetryPolicy.tryConsumeBudget());
+    }
+
+    @Test
+    public void exhaustedBudgetStopsRetries() throws Exception {
+        while (GeminiService.RetryPolicy.tryConsumeBudget()) {
+            // drain
+        }
+        ScriptedService service = new ScriptedService(new GeminiService.ApiException(503, "unavailable", 0),
+                new GeminiService.ApiException(503, "unavailable", 0));
+        try {
+            service.generateContentWithRetry("m", "p", null, FAST, GeminiService.Deadline.none());
+            fail("Expected the 503 to be rethrown");
+        } catch (GeminiService.ApiException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(1, service.calls);
+    }
+
+    @Test
+    public void retryAfterTakesPriorityOverBackoff() {
+        GeminiService.RetryPolicy policy = new GeminiService.RetryPolicy(3, 1, 5, 60000);
+        assertEquals(7000L, policy.delayMs(1, new GeminiService.ApiException(429, "slow down",
+                GeminiService.ApiException.parseRetryAfter("7"))));
+        assertEquals(0L, policy.delayMs(2, new GeminiService.ApiException(503, "unavailable", 0)));
+        assertTrue(policy.delayMs(1, new GeminiService.ApiException(503, "unavailable")) < 1);
+        assertTrue(policy.delayMs(3, new IOException("reset")) < 4);
+    }
+
+    @Test
+    public void parsesRetryAfterSeconds() {
+        assertEquals(2000L, GeminiService.ApiException.parseRetryAfter(" 2 "));
+        assertEquals(-1L, GeminiService.ApiException.parseRetryAfter(null));
+        assertEquals(-1L, GeminiService.ApiException.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    public void retryAfterLongerThanTimeLimitIsNotWaited() throws Exception {
+        ScriptedService service = new ScriptedService(new GeminiService.ApiException(429, "slow down", 60000),
+                "ok");
+        try {
+            service.generateContentWithRetry("m", "p", null, FAST, GeminiService.Deadline.none());
+            fail("Expected the 429 to be rethrown");
+        } catch (GeminiService.ApiException e) {
+            assertEquals(429, e.getStatusCode());
+        }
+        assertEquals(1, service.calls);
+    }
+
+    @Test
+    public void classifiesRetryableFailures() {
+        for (int status : new int[] { 408, 429, 500, 502, 503, 504 }) {
+            assertTrue(String.valueOf(status),
+                    GeminiService.RetryPolicy.isRetryable(new GeminiService.ApiException(status, "")));
+        }
+        for (int status : new int[] { 400, 401, 403, 404, 501 }) {
+            assertFalse(String.valueOf(status),
+                    GeminiService.RetryPolicy.isRetryable(new GeminiService.ApiException(status, "")));
+        }
+        assertTrue(GeminiService.RetryPolicy.isRetryable(new IOException("reset")));
+        assertFalse(GeminiService.RetryPolicy.isRetryable(new GeminiService.DeadlineExceededException()));
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        ScriptedService service = new ScriptedService(new GeminiService.ApiException(400, "bad request"), "ok");
+        try {
+            service.generateContentWithRetry("m", "p", null, FAST, GeminiService.Deadline.none());
+            fail("Expected the 400 to be rethrown");
+        } catch (GeminiService.ApiException e) {
+            assertEquals(400, e.getStatusCode());
+        }
+        assertEquals(1, service.calls);
+    }
+
+    @Test
+    public void transientFailuresAreRetried() throws Exception {
+        ScriptedService service = new ScriptedService(new GeminiService.ApiException(503, "unavailable", 0),
+                new IOException("connection reset"), "ok");
+        assertEquals("ok", service.generateContentWithRetry("m", "p", null, FAST, GeminiService.Deadline.none()));
+        assertEquals(3, service.calls);
+        assertEquals(18.1, GeminiService.RetryPolicy.getRemainingBudget(), 0.0001);
+    }
+
+    /**
+     * GeminiService whose calls return or throw the scripted outcomes in order
+     */
+    private static class ScriptedService extends GeminiService {
+        private final Deque<Object> outcomes;
+        private int calls;
+
+        ScriptedService(Object... outcomes) {
+            super("test-key");
+            this.outcomes = new ArrayDeque<>(Arrays.asList(outcomes));
+        }
+
+        @Override
+        public String generateContent(String model, String prompt, Map<String, Object> parameters,
+                Deadline deadline) throws IOException {
+            calls++;
+            Object outcome = outcomes.poll();
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+            if (outcome instanceof RuntimeException) {
+                throw (RuntimeException) outcome;
+            }
+            return (String) outcome;
+        }
+    }
+}
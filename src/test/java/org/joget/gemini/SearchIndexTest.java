@@ -0,0 +1,113 @@
+package org.joget.gemini;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SearchIndex: tokenizing, BM25 ranking, prefix expansion, counting and removal
+ */
+public class SearchIndexTest {
+
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.put("net", "Computer networks: routing, switching and network security");
+        index.put("java", "Introduction to Java programming and object oriented design");
+        index.put("db", "Database design with SQL");
+        index.put("sec", "Security basics");
+    }
+
+    @Test
+    public void tokenizeLowercasesAndDropsStopWords() {
+        assertEquals(Arrays.asList("intro", "java", "2024"), SearchIndex.tokenize("An Intro to JAVA, 2024!"));
+        assertTrue(SearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void ranksByTermFrequencyAndRarity() {
+        // "design" is in two documents; the shorter one ranks first
+        assertEquals(Arrays.asList("db", "java"), ids(index.search("design", 10)));
+        // "sql" is rare, so matching it outweighs matching the common "design"
+        assertEquals("db", ids(index.search("java sql design", 10)).get(0));
+    }
+
+    @Test
+    public void shorterDocumentRanksHigherForSameTerm() {
+        List<SearchIndex.Hit> hits = index.search("security", 10);
+        assertEquals(Arrays.asList("sec", "net"), ids(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void prefixMatchesCountLessThanExactMatches() {
+        index.put("web", "Networking for the web");
+        // "network" matches "network" exactly in net and only "networks"/"networking" as prefixes elsewhere
+        List<String> ids = ids(index.search("network", 10));
+        assertEquals(new HashSet<>(Arrays.asList("net", "web")), new HashSet<>(ids));
+        assertEquals("net", ids.get(0));
+
+        index.put("exact", "network");
+        index.put("prefix", "networking");
+        List<SearchIndex.Hit> hits = index.search("network", 10);
+        assertTrue(score(hits, "exact") > score(hits, "prefix"));
+    }
+
+    @Test
+    public void countMatchesCountsDocumentsWithAnyTerm() {
+        assertEquals(2, index.countMatches("design"));
+        assertEquals(4, index.countMatches("design security"));
+        assertEquals(1, index.countMatches("program"));
+        assertEquals(0, index.countMatches("the"));
+        assertEquals(0, index.countMatches("chemistry"));
+    }
+
+    @Test
+    public void searchHonoursLimit() {
+        assertEquals(1, index.search("design security", 1).size());
+    }
+
+    @Test
+    public void putReplacesAndRemoveDeletes() {
+        index.put("db", "Spreadsheets");
+        assertEquals(Arrays.asList("java"), ids(index.search("design", 10)));
+
+        index.remove("java");
+        assertEquals(0, index.countMatches("design"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void retainAllDropsMissingIds() {
+        int termsBefore = index.termCount();
+        assertEquals(2, index.retainAll(new HashSet<>(Arrays.asList("net", "sec", "gone"))));
+        assertEquals(2, index.size());
+        assertEquals(0, index.countMatches("design java sql"));
+        assertEquals(2, index.countMatches("security"));
+        assertTrue(index.termCount() < termsBefore);
+    }
+
+    private static List<String> ids(List<SearchIndex.Hit> hits) {
+        List<String> ids = new ArrayList<>();
+        for (SearchIndex.Hit hit : hits) {
+            ids.add(hit.getDocId());
+        }
+        return ids;
+    }
+
+    private static double score(List<SearchIndex.Hit> hits, String docId) {
+        for (SearchIndex.Hit hit : hits) {
+            if (hit.getDocId().equals(docId)) {
+                return hit.getScore();
+            }
+        }
+        return 0;
+    }
+}